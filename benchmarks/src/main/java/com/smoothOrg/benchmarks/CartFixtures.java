@@ -0,0 +1,84 @@
+package com.smoothOrg.benchmarks;
+
+import com.smoothOrg.web.config.PlatformFeesConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic carts in the shape the cart calculators receive: one map per product with a
+ * {@code platforms} list of listing maps, as built by the search endpoints.
+ */
+public final class CartFixtures {
+
+    private CartFixtures() {
+    }
+
+    public static String platformName(int platform) {
+        return "platform_" + platform;
+    }
+
+    /**
+     * @param itemCount     products in the cart
+     * @param platformCount platforms each product may be listed on
+     * @param seed          random seed, so every fork sees the same cart
+     */
+    public static List<Map<String, Object>> cart(int itemCount, int platformCount, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, Object>> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            double basePrice = 20 + random.nextInt(480);
+            List<Map<String, Object>> listings = new ArrayList<>(platformCount);
+            for (int p = 0; p < platformCount; p++) {
+                // Roughly one listing in ten is missing and one in twenty out of stock
+                if (random.nextInt(10) == 0) continue;
+                Map<String, Object> listing = new LinkedHashMap<>();
+                listing.put("platform", platformName(p));
+                listing.put("product_id", "product_" + i);
+                listing.put("selling_price", Math.round(basePrice * (0.85 + random.nextDouble() * 0.3) * 100) / 100.0);
+                listing.put("mrp", basePrice * 1.2);
+                listing.put("availability", random.nextInt(20) != 0);
+                listing.put("inventory", 1 + random.nextInt(50));
+                listing.put("product_url", "https://example.com/" + platformName(p) + "/product_" + i);
+                listings.add(listing);
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("product_id", "product_" + i);
+            item.put("product_name", "Product " + i);
+            item.put("platforms", listings);
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static int[] quantities(int itemCount, long seed) {
+        Random random = new Random(seed);
+        int[] quantities = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            quantities[i] = 1 + random.nextInt(3);
+        }
+        return quantities;
+    }
+
+    /**
+     * Fee table with a spread of delivery fees and free-delivery thresholds per platform.
+     */
+    public static PlatformFeesConfig fees(int platformCount) {
+        PlatformFeesConfig config = new PlatformFeesConfig();
+        Map<String, PlatformFeesConfig.PlatformFee> fees = new HashMap<>();
+        for (int p = 0; p < platformCount; p++) {
+            PlatformFeesConfig.PlatformFee fee = new PlatformFeesConfig.PlatformFee();
+            fee.setDeliveryFee(15 + 5 * (p % 4));
+            fee.setFreeDeliveryThreshold(99 + 50 * (p % 3));
+            fee.setHandlingCharge(2 + p % 5);
+            fee.setPlatformFee(1 + p % 4);
+            fees.put(platformName(p), fee);
+        }
+        config.bulkUpdateFees(fees);
+        return config;
+    }
+}
@@ -0,0 +1,143 @@
+package com.smoothOrg.benchmarks;
+
+import com.smoothOrg.services.util.GeohashUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geohash encoding: the previous bisecting String encoder against the long-form encoder,
+ * with and without building the String. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeohashBenchmark {
+
+    private static final int POINTS = 1024;
+    private static final int PRECISION = 7;
+
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+    private final long[] hashes = new long[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // Points spread over Bangalore, where the listings are
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = 12.8 + random.nextDouble() * 0.4;
+            longitudes[i] = 77.4 + random.nextDouble() * 0.4;
+        }
+    }
+
+    private int nextPoint() {
+        next = (next + 1) & (POINTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public String legacyEncode() {
+        int i = nextPoint();
+        return LegacyGeohashEncoder.encode(latitudes[i], longitudes[i], PRECISION);
+    }
+
+    @Benchmark
+    public String encodeString() {
+        int i = nextPoint();
+        return GeohashUtils.encode(latitudes[i], longitudes[i], PRECISION);
+    }
+
+    @Benchmark
+    public long encodeLong() {
+        int i = nextPoint();
+        return GeohashUtils.encodeLong(latitudes[i], longitudes[i], PRECISION);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long[] encodeBatch() {
+        GeohashUtils.encodeLong(latitudes, longitudes, PRECISION, hashes);
+        return hashes;
+    }
+
+    @Benchmark
+    public void neighbors(Blackhole blackhole) {
+        int i = nextPoint();
+        long hash = GeohashUtils.encodeLong(latitudes[i], longitudes[i], PRECISION);
+        for (int dLat = -1; dLat <= 1; dLat++) {
+            for (int dLon = -1; dLon <= 1; dLon++) {
+                blackhole.consume(GeohashUtils.neighbor(hash, dLat, dLon));
+            }
+        }
+    }
+
+    /**
+     * The encoder GeohashUtils used before the long form: bisection with two range arrays
+     * and a StringBuilder per call.
+     */
+    static final class LegacyGeohashEncoder {
+
+        private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+        private static final int[] BITS = {16, 8, 4, 2, 1};
+
+        static String encode(double latitude, double longitude, int precision) {
+            double[] latRange = {-90.0, 90.0};
+            double[] lonRange = {-180.0, 180.0};
+
+            StringBuilder geohash = new StringBuilder();
+            boolean isEven = true;
+            int bit = 0;
+            int ch = 0;
+
+            while (geohash.length() < precision) {
+                double mid;
+                if (isEven) {
+                    mid = (lonRange[0] + lonRange[1]) / 2;
+                    if (longitude > mid) {
+                        ch |= BITS[bit];
+                        lonRange[0] = mid;
+                    } else {
+                        lonRange[1] = mid;
+                    }
+                } else {
+                    mid = (latRange[0] + latRange[1]) / 2;
+                    if (latitude > mid) {
+                        ch |= BITS[bit];
+                        latRange[0] = mid;
+                    } else {
+                        latRange[1] = mid;
+                    }
+                }
+
+                isEven = !isEven;
+
+                if (bit < 4) {
+                    bit++;
+                } else {
+                    geohash.append(BASE32.charAt(ch));
+                    bit = 0;
+                    ch = 0;
+                }
+            }
+
+            return geohash.toString();
+        }
+    }
+}
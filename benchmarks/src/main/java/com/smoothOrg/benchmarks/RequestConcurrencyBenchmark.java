@@ -0,0 +1,114 @@
+package com.smoothOrg.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load comparison of the two request execution modes under high concurrency: a burst of
+ * {@value #REQUESTS} requests, each waiting on Elasticsearch and then holding one of
+ * {@code poolSize} JDBC connections for a query. {@code platform} runs them on a fixed pool
+ * the size of Tomcat's default (200 threads), {@code virtual} on one virtual thread each, as
+ * {@code app.virtual-threads.enabled=true} does.
+ * <p>
+ * Platform threads cap throughput at {@code threads / (esMillis + dbMillis)}; virtual threads
+ * remove that cap, leaving the connection pool ({@code poolSize / dbMillis}) as the limit.
+ * The {@code virtual} mode needs a Java 21+ runtime; on 17 run with {@code -p mode=platform}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestConcurrencyBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final int TOMCAT_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"20"})
+    public int poolSize;
+
+    @Param({"20"})
+    public long esMillis;
+
+    @Param({"1"})
+    public long dbMillis;
+
+    private ExecutorService executor;
+    private Semaphore connections;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = "virtual".equals(mode) ? virtualThreadPerTask() : Executors.newFixedThreadPool(TOMCAT_THREADS);
+        connections = new Semaphore(poolSize, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    handleRequest();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    /**
+     * Search, then a repository call, both blocking the request thread as the web tier does.
+     */
+    private void handleRequest() throws InterruptedException {
+        Thread.sleep(esMillis);
+        connections.acquire();
+        try {
+            Thread.sleep(dbMillis);
+        } finally {
+            connections.release();
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up reflectively so the module
+     * still compiles for Java 17.
+     */
+    private static ExecutorService virtualThreadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need Java 21+; run with -p mode=platform", e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.smoothOrg.benchmarks;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smoothOrg.services.elastic.ElasticsearchMetrics;
+import com.smoothOrg.services.elastic.ElasticsearchResilience;
+import com.smoothOrg.services.elastic.ElasticsearchServiceImpl;
+import com.smoothOrg.services.elastic.GeoRouting;
+import com.smoothOrg.services.elastic.ProductDoc;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cost of a product search in {@link ElasticsearchServiceImpl}: building the
+ * query, parsing a {@code _search} response of {@code hits} full product documents and
+ * mapping them to {@link ProductDoc}s. Served by a {@link StubTransport}, so no cluster is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchMappingBenchmark {
+
+    private static final String INDEX = "grocery_products_v1";
+
+    @Param({"10", "100", "1000"})
+    int hits;
+
+    private ElasticsearchServiceImpl service;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] response = new ObjectMapper().writeValueAsBytes(searchResponse(hits));
+        StubTransport transport = new StubTransport(response);
+        ElasticsearchMetrics metrics = new ElasticsearchMetrics(new SimpleMeterRegistry());
+        // Same settings as application.properties; the stub always answers, so nothing fires
+        ElasticsearchResilience resilience = new ElasticsearchResilience(metrics, 2000, true, 20, 2, 50, 0.5, 50, 20, 10000);
+        service = new ElasticsearchServiceImpl(new ElasticsearchClient(transport), new ElasticsearchAsyncClient(transport),
+                metrics, resilience, new GeoRouting(4), 5);
+    }
+
+    @Benchmark
+    public List<ProductDoc> searchProducts() throws IOException {
+        return service.searchProducts(INDEX, "amul toned milk", hits);
+    }
+
+    @Benchmark
+    public List<ProductDoc> searchProductsByGeohash() throws IOException {
+        return service.searchProductsByGeohash(INDEX, "amul toned milk", "tdr1y1g", hits);
+    }
+
+    private static Map<String, Object> searchResponse(int hitCount) {
+        List<Map<String, Object>> hitList = new ArrayList<>(hitCount);
+        for (int i = 0; i < hitCount; i++) {
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("_index", INDEX);
+            hit.put("_id", "blinkit_" + i);
+            hit.put("_score", 40.0 - i * 0.01);
+            hit.put("_source", productDocument(i));
+            hitList.add(hit);
+        }
+
+        Map<String, Object> total = Map.of("value", hitCount, "relation", "eq");
+        Map<String, Object> hitsSection = new LinkedHashMap<>();
+        hitsSection.put("total", total);
+        hitsSection.put("max_score", 40.0);
+        hitsSection.put("hits", hitList);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("took", 3);
+        response.put("timed_out", false);
+        response.put("_shards", Map.of("total", 1, "successful", 1, "skipped", 0, "failed", 0));
+        response.put("hits", hitsSection);
+        return response;
+    }
+
+    /**
+     * A document with the fields of the grocery_products mapping, sized like a real listing.
+     */
+    private static Map<String, Object> productDocument(int i) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("platform", "blinkit");
+        document.put("product_id", "product_" + i);
+        document.put("product_name", "Amul Taaza Toned Fresh Milk " + i);
+        document.put("brand_name", "Amul");
+        document.put("categories", "Dairy, Bread & Eggs");
+        document.put("sub_categories", "Milk");
+        document.put("breadcrumbs", "Home > Dairy, Bread & Eggs > Milk");
+        document.put("product_url", "https://blinkit.com/prn/amul-taaza-toned-fresh-milk/prid/" + i);
+        document.put("image_url", "https://cdn.grofers.com/app/images/products/" + i + ".jpg");
+        document.put("quantity", "500 ml");
+        document.put("mrp", 29.0);
+        document.put("selling_price", 27.0 + (i % 5));
+        document.put("discount_percent", 6.9);
+        document.put("availability", true);
+        document.put("inventory", 40 + i % 10);
+        document.put("geohash", "tdr1y1g");
+        document.put("location", "12.9716,77.5946");
+        document.put("description", "Amul Taaza Toned Milk is pasteurised and homogenised, with 3% fat. "
+                + "Store in a refrigerator below 4 degrees and consume within two days of opening.");
+        document.put("ingredients", "Toned milk");
+        document.put("product_attributes", Map.of("fat", "3%", "type", "Toned", "shelf_life", "2 days"));
+        document.put("created_at", "2025-06-01T10:00:00Z");
+        document.put("updated_at", "2025-06-20T08:30:00Z");
+        return document;
+    }
+}
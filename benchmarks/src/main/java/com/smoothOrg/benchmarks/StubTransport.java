@@ -0,0 +1,78 @@
+package com.smoothOrg.benchmarks;
+
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.DefaultTransportOptions;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process transport that answers every request with the same canned JSON body.
+ * <p>
+ * The request body is still serialised and the response is parsed with the endpoint's own
+ * deserializer, so the client-side cost of a call is measured without a network or cluster.
+ */
+public class StubTransport implements ElasticsearchTransport {
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final byte[] responseBody;
+
+    public StubTransport(byte[] responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+                                                                 Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                 TransportOptions options) throws IOException {
+        Object body = endpoint.body(request);
+        if (body != null) {
+            try (JsonGenerator generator = mapper.jsonProvider().createGenerator(OutputStream.nullOutputStream())) {
+                mapper.serialize(body, generator);
+            }
+        }
+        if (!(endpoint instanceof JsonEndpoint<?, ?, ?> jsonEndpoint)) {
+            throw new UnsupportedOperationException("Stub transport only serves JSON endpoints: " + endpoint.id());
+        }
+        JsonpDeserializer<ResponseT> deserializer = (JsonpDeserializer<ResponseT>) jsonEndpoint.responseDeserializer();
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(responseBody))) {
+            return deserializer.deserialize(parser, mapper);
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                        Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                        TransportOptions options) {
+        try {
+            return CompletableFuture.completedFuture(performRequest(request, endpoint, options));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return mapper;
+    }
+
+    @Override
+    public TransportOptions options() {
+        return DefaultTransportOptions.EMPTY;
+    }
+
+    @Override
+    public void close() {
+    }
+}
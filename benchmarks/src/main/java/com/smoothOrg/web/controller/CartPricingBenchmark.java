@@ -0,0 +1,73 @@
+package com.smoothOrg.web.controller;
+
+import com.smoothOrg.benchmarks.CartFixtures;
+import com.smoothOrg.services.cart.CartMetrics;
+import com.smoothOrg.services.cart.CartOptimizer;
+import com.smoothOrg.web.config.PlatformFeesConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart pricing on synthetic carts: {@link CartController#calculateCart} (per-platform combos
+ * plus the fee-aware optimiser) and {@link UserCartController}'s per-platform pricing.
+ * Lives in the controller package to reach the package-private pricing method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartPricingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int items;
+
+    @Param({"3", "5", "8"})
+    int platforms;
+
+    private CartController cartController;
+    private UserCartController userCartController;
+    private CartController.CartCalculationRequest request;
+    private List<Map<String, Object>> cart;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        PlatformFeesConfig fees = CartFixtures.fees(platforms);
+        CartMetrics metrics = new CartMetrics(new SimpleMeterRegistry());
+        cartController = new CartController(fees, new CartOptimizer(), metrics);
+        // Only the pricing path is exercised; cart storage and search are not touched
+        userCartController = new UserCartController(null, null, fees, null, "grocery_products_v1", metrics, Runnable::run);
+
+        cart = CartFixtures.cart(items, platforms, 42);
+        quantities = CartFixtures.quantities(items, 7);
+        request = new CartController.CartCalculationRequest(
+                cart, Arrays.stream(quantities).boxed().toList(), 2);
+    }
+
+    @Benchmark
+    public Object calculateCart() {
+        return cartController.calculateCart(request);
+    }
+
+    @Benchmark
+    public Object calculatePlatformPricing() {
+        return userCartController.calculatePlatformPricing(cart, quantities);
+    }
+}
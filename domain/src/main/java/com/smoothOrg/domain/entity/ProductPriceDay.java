@@ -0,0 +1,173 @@
+package com.smoothOrg.domain.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One day of selling prices of a product on one platform in one geohash cell.
+ * <p>
+ * The open/min/max/close/sum columns are the day's rollup, which is all a summary query reads.
+ * The individual price points are kept in {@code points}, delta encoded column by column
+ * (see {@code PriceSeriesCodec}). Prices are in paise.
+ */
+@Entity
+@Table(name = "product_price_days",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"product_id", "platform", "geohash", "day"}),
+        indexes = {
+                @Index(name = "idx_product_price_days_product_day", columnList = "product_id, day"),
+                @Index(name = "idx_product_price_days_day", columnList = "day")
+        })
+public class ProductPriceDay {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false, length = 100)
+    private String productId;
+
+    @Column(nullable = false, length = 50)
+    private String platform;
+
+    // Empty when the listing has no location
+    @Column(nullable = false, length = 12)
+    private String geohash;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    private int pointCount;
+
+    private long openPaise;
+
+    private long minPaise;
+
+    private long maxPaise;
+
+    private long closePaise;
+
+    private long sumPaise;
+
+    // Time of the last price point of the day
+    private Instant closedAt;
+
+    @Column(nullable = false)
+    private byte[] points;
+
+    // Constructors
+    public ProductPriceDay() {}
+
+    public ProductPriceDay(String productId, String platform, String geohash, LocalDate day) {
+        this.productId = productId;
+        this.platform = platform;
+        this.geohash = geohash;
+        this.day = day;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public void setPlatform(String platform) {
+        this.platform = platform;
+    }
+
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public void setPointCount(int pointCount) {
+        this.pointCount = pointCount;
+    }
+
+    public long getOpenPaise() {
+        return openPaise;
+    }
+
+    public void setOpenPaise(long openPaise) {
+        this.openPaise = openPaise;
+    }
+
+    public long getMinPaise() {
+        return minPaise;
+    }
+
+    public void setMinPaise(long minPaise) {
+        this.minPaise = minPaise;
+    }
+
+    public long getMaxPaise() {
+        return maxPaise;
+    }
+
+    public void setMaxPaise(long maxPaise) {
+        this.maxPaise = maxPaise;
+    }
+
+    public long getClosePaise() {
+        return closePaise;
+    }
+
+    public void setClosePaise(long closePaise) {
+        this.closePaise = closePaise;
+    }
+
+    public long getSumPaise() {
+        return sumPaise;
+    }
+
+    public void setSumPaise(long sumPaise) {
+        this.sumPaise = sumPaise;
+    }
+
+    public Instant getClosedAt() {
+        return closedAt;
+    }
+
+    public void setClosedAt(Instant closedAt) {
+        this.closedAt = closedAt;
+    }
+
+    public byte[] getPoints() {
+        return points;
+    }
+
+    public void setPoints(byte[] points) {
+        this.points = points;
+    }
+}
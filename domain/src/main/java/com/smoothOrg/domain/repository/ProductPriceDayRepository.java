@@ -0,0 +1,61 @@
+package com.smoothOrg.domain.repository;
+
+import com.smoothOrg.domain.entity.ProductPriceDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductPriceDayRepository extends JpaRepository<ProductPriceDay, Long> {
+
+    /**
+     * Rollup columns of a day, selected without the encoded price points.
+     */
+    interface Rollup {
+        String getPlatform();
+        String getGeohash();
+        LocalDate getDay();
+        int getPointCount();
+        long getOpenPaise();
+        long getMinPaise();
+        long getMaxPaise();
+        long getClosePaise();
+        long getSumPaise();
+        Instant getClosedAt();
+    }
+
+    List<ProductPriceDay> findByDayAndProductIdIn(LocalDate day, Collection<String> productIds);
+
+    /**
+     * Days of a product from {@code from} on, oldest first, as entities or as
+     * {@link Rollup} projections.
+     */
+    <T> List<T> findByProductIdAndDayGreaterThanEqualOrderByDayAsc(String productId, LocalDate from, Class<T> type);
+
+    /**
+     * The last day before {@code day} of every series of a product, which holds the price in
+     * effect on {@code day} until the series next changes.
+     */
+    @Query("select p.platform as platform, p.geohash as geohash, p.day as day, p.pointCount as pointCount, "
+            + "p.openPaise as openPaise, p.minPaise as minPaise, p.maxPaise as maxPaise, p.closePaise as closePaise, "
+            + "p.sumPaise as sumPaise, p.closedAt as closedAt from ProductPriceDay p "
+            + "where p.productId = :productId and p.day = (select max(q.day) from ProductPriceDay q "
+            + "where q.productId = p.productId and q.platform = p.platform and q.geohash = p.geohash and q.day < :day)")
+    List<Rollup> findLastDaysBefore(@Param("productId") String productId, @Param("day") LocalDate day);
+
+    /**
+     * Delete days before {@code day}, except the latest day of each series: a price that has not
+     * changed since is still the current one.
+     */
+    @Modifying
+    @Query("delete from ProductPriceDay p where p.day < :day and p.day < (select max(q.day) from ProductPriceDay q "
+            + "where q.productId = p.productId and q.platform = p.platform and q.geohash = p.geohash)")
+    int deleteByDayBefore(@Param("day") LocalDate day);
+}
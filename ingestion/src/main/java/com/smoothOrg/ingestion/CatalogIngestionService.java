@@ -0,0 +1,245 @@
+package com.smoothOrg.ingestion;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.smoothOrg.ingestion.bulk.BulkIndexer;
+import com.smoothOrg.ingestion.delta.DocumentFingerprint;
+import com.smoothOrg.ingestion.delta.FingerprintStore;
+import com.smoothOrg.ingestion.feed.CatalogFeedReader;
+import com.smoothOrg.ingestion.feed.ProductNormalizer;
+import com.smoothOrg.services.elastic.GeoRouting;
+import com.smoothOrg.services.pricehistory.PriceHistoryService;
+import com.smoothOrg.services.pricehistory.PriceObservation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Streams a platform catalog feed into the products index through the bulk API.
+ * <p>
+ * Records are read one at a time, normalised to the index schema and handed to a
+ * {@link BulkIndexer}, which bounds the number of in-flight bulk requests. Index refresh is
+ * switched off for the duration of the load and restored afterwards.
+ * <p>
+ * In incremental mode a {@link FingerprintStore} per index remembers what Elasticsearch last
+ * acknowledged: unchanged documents are skipped, documents where only price fields moved are
+ * sent as a partial {@code _update}, and only new or otherwise changed documents are indexed in
+ * full. A fingerprint is only stored once its write is acknowledged, so a load that dies midway
+ * sends its unacknowledged documents again on the next run.
+ * <p>
+ * Every write is routed by the document's geohash prefix ({@link GeoRouting}), the routing the
+ * location-scoped searches use. A document whose prefix changed is deleted under its old routing:
+ * incremental loads take that from the fingerprint store, full loads delete other copies of each
+ * batch's ids across all shards before writing it.
+ * <p>
+ * The selling price of every document Elasticsearch acknowledged is also recorded in the
+ * {@link PriceHistoryService}, in batches of about {@code app.ingestion.batch-size}, at the
+ * document's {@code updated_at}. Prices of failed writes are dropped; their documents are sent
+ * again by the next run.
+ */
+@Service
+public class CatalogIngestionService {
+
+    private final ElasticsearchClient client;
+    private final GeoRouting geoRouting;
+    private final PriceHistoryService priceHistory;
+    private final int batchSize;
+    private final int concurrency;
+    private final String refreshInterval;
+    private final ProductNormalizer normalizer;
+    private final boolean incremental;
+    private final Path fingerprintDir;
+
+    public CatalogIngestionService(ElasticsearchClient client,
+                                   GeoRouting geoRouting,
+                                   PriceHistoryService priceHistory,
+                                   @Value("${app.ingestion.batch-size:1000}") int batchSize,
+                                   @Value("${app.ingestion.concurrency:4}") int concurrency,
+                                   @Value("${app.ingestion.refresh-interval:1s}") String refreshInterval,
+                                   @Value("${app.ingestion.geohash-precision:7}") int geohashPrecision,
+                                   @Value("${app.ingestion.incremental:true}") boolean incremental,
+                                   @Value("${app.ingestion.fingerprint-dir:data/fingerprints}") String fingerprintDir) {
+        this.client = client;
+        this.geoRouting = geoRouting;
+        this.priceHistory = priceHistory;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.refreshInterval = refreshInterval;
+        this.normalizer = new ProductNormalizer(geohashPrecision);
+        this.incremental = incremental;
+        this.fingerprintDir = Path.of(fingerprintDir);
+    }
+
+    public IngestionReport ingest(Path feed, String index) throws IOException, InterruptedException {
+        return ingest(feed, index, incremental);
+    }
+
+    public IngestionReport ingest(Path feed, String index, boolean incremental) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long read = 0;
+        long skipped = 0;
+        long indexed = 0;
+        long updated = 0;
+        long unchanged = 0;
+
+        FingerprintStore fingerprints = incremental ? FingerprintStore.open(fingerprintDir.resolve(index + ".fp")) : null;
+        Queue<String> failedIds = new ConcurrentLinkedQueue<>();
+        // Fingerprints and prices of documents sent, by id, until their write is acknowledged
+        Map<String, Acknowledgement> awaiting = new ConcurrentHashMap<>();
+        Queue<Acknowledgement> acknowledged = new ConcurrentLinkedQueue<>();
+        List<PriceObservation> prices = new ArrayList<>();
+        long sent = 0;
+        // Routing each rerouted document had before, in case its delete or index fails
+        Map<String, Long> rerouted = new HashMap<>();
+
+        setRefreshInterval(index, "-1");
+        BulkIndexer indexer = new BulkIndexer(client, index, batchSize, concurrency);
+        indexer.onFailure(id -> {
+            failedIds.add(id);
+            awaiting.remove(id);
+        });
+        indexer.onSuccess(id -> {
+            Acknowledgement pending = awaiting.remove(id);
+            if (pending != null) {
+                acknowledged.add(pending);
+            }
+        });
+        indexer.deleteOtherRoutings(fingerprints == null && geoRouting.isEnabled());
+        try (CatalogFeedReader reader = CatalogFeedReader.open(feed)) {
+            while (reader.hasNext()) {
+                read++;
+                Map<String, Object> document = normalizer.normalize(reader.next());
+                if (document == null) {
+                    skipped++;
+                    continue;
+                }
+                String id = ProductNormalizer.documentId(document);
+                String routing = geoRouting.of(document);
+                if (fingerprints == null) {
+                    await(awaiting, id, null, document);
+                    indexer.index(id, routing, document);
+                    indexed++;
+                    if (++sent % batchSize == 0) recordAcknowledged(acknowledged, null, prices);
+                    continue;
+                }
+
+                long price = DocumentFingerprint.price(document);
+                long content = DocumentFingerprint.content(document);
+                long routingKey = GeoRouting.toLong(routing);
+                FingerprintStore.Fingerprint previous = fingerprints.get(id);
+                if (previous != null && previous.routing() == routingKey && previous.content() == content
+                        && previous.price() == price) {
+                    unchanged++;
+                    continue;
+                }
+                await(awaiting, id, new FingerprintStore.Fingerprint(price, content, routingKey), document);
+                if (previous != null && previous.routing() != routingKey) {
+                    indexer.reroute(id, GeoRouting.fromLong(previous.routing()), routing, document);
+                    rerouted.put(id, previous.routing());
+                    indexed++;
+                } else if (previous == null || previous.content() != content) {
+                    indexer.index(id, routing, document);
+                    indexed++;
+                } else {
+                    indexer.update(id, routing, DocumentFingerprint.priceUpdate(document));
+                    updated++;
+                }
+                if (++sent % batchSize == 0) recordAcknowledged(acknowledged, fingerprints, prices);
+            }
+        } finally {
+            indexer.close();
+            setRefreshInterval(index, refreshInterval);
+            if (fingerprints != null) {
+                recordAcknowledged(acknowledged, fingerprints, prices);
+                // Failed writes are forgotten so the next run sends them in full; a failed reroute
+                // keeps its old routing so the next run deletes that copy again
+                for (String id : failedIds) {
+                    Long previousRouting = rerouted.get(id);
+                    if (previousRouting != null) {
+                        fingerprints.put(id, 0, 0, previousRouting);
+                    } else {
+                        fingerprints.remove(id);
+                    }
+                }
+                fingerprints.close();
+            }
+        }
+        recordAcknowledged(acknowledged, null, prices);
+        priceHistory.purgeExpired();
+
+        return new IngestionReport(feed.toString(), index, read, skipped, indexed, updated, unchanged,
+                indexer.getFailed(), indexer.getBatches(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * What a sent document updates once Elasticsearch acknowledges its write.
+     *
+     * @param fingerprint stored in the fingerprint store; null in a full load
+     * @param price       recorded in the price history; null when it is disabled
+     */
+    private record Acknowledgement(String id, FingerprintStore.Fingerprint fingerprint, PriceObservation price) {
+    }
+
+    /**
+     * Hold the document's fingerprint and price until its write is acknowledged. Must come before
+     * the write is queued, which may send it at once.
+     */
+    private void await(Map<String, Acknowledgement> awaiting, String id, FingerprintStore.Fingerprint fingerprint,
+                       Map<String, Object> document) {
+        PriceObservation price = null;
+        if (priceHistory.isEnabled()) {
+            String geohash = document.get("geohash") instanceof String cell ? cell.toLowerCase(Locale.ROOT) : "";
+            price = new PriceObservation((String) document.get("product_id"), (String) document.get("platform"), geohash,
+                    observedAt(document), Math.round(((Number) document.get("selling_price")).doubleValue() * 100));
+        }
+        if (fingerprint != null || price != null) {
+            awaiting.put(id, new Acknowledgement(id, fingerprint, price));
+        }
+    }
+
+    /**
+     * Store the fingerprints of the writes acknowledged so far and record their prices. With a
+     * null store (after it is closed) only the prices buffered in {@code prices} are written out.
+     */
+    private void recordAcknowledged(Queue<Acknowledgement> acknowledged, FingerprintStore fingerprints,
+                                    List<PriceObservation> prices) throws IOException {
+        for (Acknowledgement write; (write = acknowledged.poll()) != null; ) {
+            FingerprintStore.Fingerprint fingerprint = write.fingerprint();
+            if (fingerprint != null && fingerprints != null) {
+                fingerprints.put(write.id(), fingerprint.price(), fingerprint.content(), fingerprint.routing());
+            }
+            if (write.price() != null) {
+                prices.add(write.price());
+            }
+        }
+        if (fingerprints == null || prices.size() >= batchSize) {
+            priceHistory.record(prices);
+            prices.clear();
+        }
+    }
+
+    private static Instant observedAt(Map<String, Object> document) {
+        try {
+            return Instant.parse((String) document.get("updated_at"));
+        } catch (DateTimeParseException e) {
+            return Instant.now();
+        }
+    }
+
+    private void setRefreshInterval(String index, String interval) throws IOException {
+        client.indices().putSettings(p -> p
+                .index(index)
+                .settings(s -> s.refreshInterval(t -> t.time(interval))));
+    }
+}
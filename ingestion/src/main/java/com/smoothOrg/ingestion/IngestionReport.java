@@ -0,0 +1,52 @@
+package com.smoothOrg.ingestion;
+
+/**
+ * Outcome of one feed load.
+ *
+ * @param read      records read from the feed
+ * @param skipped   records dropped by normalisation (missing platform, product id or price)
+ * @param indexed   documents sent in full (new, or non-price fields changed)
+ * @param updated   documents sent as a partial price update
+ * @param unchanged documents whose fingerprint matched the last run and were not sent
+ * @param failed    operations Elasticsearch rejected after retries
+ */
+public record IngestionReport(String feed,
+                              String index,
+                              long read,
+                              long skipped,
+                              long indexed,
+                              long updated,
+                              long unchanged,
+                              long failed,
+                              long batches,
+                              long elapsedMillis) {
+
+    public double docsPerSecond() {
+        long sent = indexed + updated;
+        return elapsedMillis == 0 ? sent : sent * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Share of valid records that had to be written at all.
+     */
+    public double changeRatio() {
+        long valid = read - skipped;
+        return valid == 0 ? 0 : (double) (indexed + updated) / valid;
+    }
+
+    /**
+     * Share of valid records where only price fields changed.
+     */
+    public double priceOnlyRatio() {
+        long valid = read - skipped;
+        return valid == 0 ? 0 : (double) updated / valid;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s -> %s: read=%d skipped=%d indexed=%d updated=%d unchanged=%d failed=%d batches=%d "
+                        + "changed=%.1f%% price-only=%.1f%% in %d ms (%.0f docs/sec)",
+                feed, index, read, skipped, indexed, updated, unchanged, failed, batches,
+                changeRatio() * 100, priceOnlyRatio() * 100, elapsedMillis, docsPerSecond());
+    }
+}
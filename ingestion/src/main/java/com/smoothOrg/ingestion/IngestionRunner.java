@@ -0,0 +1,42 @@
+package com.smoothOrg.ingestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+
+/**
+ * Loads the feeds listed in {@code app.ingestion.feeds} (comma separated) at startup, e.g.
+ * {@code --app.ingestion.feeds=/data/blinkit.ndjson,/data/zepto.csv}. Does nothing when unset.
+ */
+@Component
+public class IngestionRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionRunner.class);
+
+    private final CatalogIngestionService ingestionService;
+    private final String feeds;
+    private final String index;
+
+    public IngestionRunner(CatalogIngestionService ingestionService,
+                           @Value("${app.ingestion.feeds:}") String feeds,
+                           @Value("${app.elasticsearch.products-index:grocery_products}") String index) {
+        this.ingestionService = ingestionService;
+        this.feeds = feeds;
+        this.index = index;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!StringUtils.hasText(feeds)) return;
+        for (String feed : StringUtils.commaDelimitedListToStringArray(feeds)) {
+            IngestionReport report = ingestionService.ingest(Path.of(feed.trim()), index);
+            log.info("Ingestion finished: {}", report);
+        }
+    }
+}
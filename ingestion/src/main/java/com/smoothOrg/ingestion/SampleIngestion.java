@@ -1,7 +0,0 @@
-package com.smoothOrg.ingestion;
-
-public class SampleIngestion {
-    public void ingest() {
-        // placeholder for ingestion logic
-    }
-}
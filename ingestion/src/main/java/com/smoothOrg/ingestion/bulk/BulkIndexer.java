@@ -0,0 +1,272 @@
+package com.smoothOrg.ingestion.bulk;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Batches document operations into {@code _bulk} requests.
+ * <p>
+ * Up to {@code concurrency} bulk requests are in flight at once. When all slots are busy,
+ * {@link #add} blocks the caller, so a fast feed reader can never queue more than
+ * {@code concurrency} batches in memory. Items rejected with HTTP 429 (ES write queue full)
+ * are retried with exponential backoff; other item failures are counted and reported to the
+ * {@link #onFailure} listener with the document id, and acknowledged writes to the
+ * {@link #onSuccess} listener.
+ */
+public class BulkIndexer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIndexer.class);
+
+    private static final int MAX_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MS = 200;
+
+    private final ElasticsearchClient client;
+    private final String index;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile Consumer<String> failureListener = id -> {};
+    private volatile Consumer<String> successListener = id -> {};
+    private volatile boolean deleteOtherRoutings;
+    private List<BulkOperation> batch;
+
+    public BulkIndexer(ElasticsearchClient client, String index, int batchSize, int concurrency) {
+        this.client = client;
+        this.index = index;
+        this.batchSize = Math.max(1, batchSize);
+        int slots = Math.max(1, concurrency);
+        this.inFlight = new Semaphore(slots);
+        this.executor = Executors.newFixedThreadPool(slots, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-indexer-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    /**
+     * Queue a full document index (create or replace).
+     *
+     * @param routing shard routing value, or null to route by id
+     */
+    public void index(String id, String routing, Map<String, Object> document) throws InterruptedException {
+        add(BulkOperation.of(op -> op.index(i -> i.index(index).id(id).routing(routing).document(document))));
+    }
+
+    /**
+     * Queue a partial update that merges {@code fields} into an existing document, which must
+     * have been indexed with the same routing.
+     */
+    public void update(String id, String routing, Map<String, Object> fields) throws InterruptedException {
+        add(BulkOperation.of(op -> op.update(u -> u.index(index).id(id).routing(routing)
+                .action(a -> a.doc(fields)))));
+    }
+
+    /**
+     * Queue a full document index under {@code routing}, preceded in the same request by a delete
+     * of the copy stored under {@code previousRouting}, so a document whose routing changed is not
+     * left on two shards. Both operations report failures under the document id.
+     */
+    public void reroute(String id, String previousRouting, String routing, Map<String, Object> document) throws InterruptedException {
+        // Added together so the delete can never land after the index in a concurrent batch
+        batch.add(BulkOperation.of(op -> op.delete(d -> d.index(index).id(id).routing(previousRouting))));
+        index(id, routing, document);
+    }
+
+    /**
+     * Before each batch is sent, delete every copy of its indexed documents stored under another
+     * routing than the one they are now written with, on any shard. For loads that do not know
+     * the routing a document was last written with; costs one delete-by-query per batch.
+     */
+    public void deleteOtherRoutings(boolean enabled) {
+        this.deleteOtherRoutings = enabled;
+    }
+
+    /**
+     * Called from the indexer threads with the id of every operation that finally failed.
+     */
+    public void onFailure(Consumer<String> listener) {
+        this.failureListener = listener;
+    }
+
+    /**
+     * Called from the indexer threads with the id of every document index or update that
+     * Elasticsearch acknowledged (not deletes).
+     */
+    public void onSuccess(Consumer<String> listener) {
+        this.successListener = listener;
+    }
+
+    /**
+     * Queue an operation; blocks while {@code concurrency} batches are already in flight.
+     */
+    public void add(BulkOperation operation) throws InterruptedException {
+        batch.add(operation);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the pending operations as one bulk request.
+     */
+    public void flush() throws InterruptedException {
+        if (batch.isEmpty()) return;
+        List<BulkOperation> operations = batch;
+        batch = new ArrayList<>(batchSize);
+
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                if (deleteOtherRoutings) {
+                    deleteOtherRoutings(operations);
+                }
+                send(operations);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void send(List<BulkOperation> operations) {
+        List<BulkOperation> pending = operations;
+        long backoff = INITIAL_BACKOFF_MS;
+        for (int attempt = 0; ; attempt++) {
+            List<BulkOperation> toSend = pending;
+            List<BulkOperation> rejected = new ArrayList<>();
+            try {
+                BulkResponse response = client.bulk(BulkRequest.of(b -> b.operations(toSend)));
+                batches.incrementAndGet();
+                List<BulkResponseItem> items = response.items();
+                for (int i = 0; i < items.size(); i++) {
+                    BulkResponseItem item = items.get(i);
+                    if (item.error() == null) {
+                        succeeded.incrementAndGet();
+                        if (!toSend.get(i).isDelete()) {
+                            successListener.accept(id(toSend.get(i)));
+                        }
+                    } else if (item.status() == 429) {
+                        rejected.add(toSend.get(i));
+                    } else {
+                        fail(toSend.get(i));
+                        log.debug("Bulk item {} failed: {}", item.id(), item.error().reason());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Bulk request of {} operations failed: {}", toSend.size(), e.getMessage());
+                rejected = toSend;
+            }
+
+            if (rejected.isEmpty()) return;
+            if (attempt >= MAX_RETRIES) {
+                rejected.forEach(this::fail);
+                return;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.forEach(this::fail);
+                return;
+            }
+            backoff *= 2;
+            pending = rejected;
+        }
+    }
+
+    private void deleteOtherRoutings(List<BulkOperation> operations) {
+        // Ids by the routing they are written with; "" for routed by id
+        Map<String, List<String>> idsByRouting = new LinkedHashMap<>();
+        for (BulkOperation operation : operations) {
+            if (operation.isIndex()) {
+                idsByRouting.computeIfAbsent(Objects.requireNonNullElse(operation.index().routing(), ""),
+                        routing -> new ArrayList<>()).add(operation.index().id());
+            }
+        }
+        if (idsByRouting.isEmpty()) return;
+
+        List<Query> elsewhere = new ArrayList<>(idsByRouting.size());
+        idsByRouting.forEach((routing, ids) -> elsewhere.add(Query.of(q -> q.bool(b -> {
+            b.filter(f -> f.ids(i -> i.values(ids)));
+            return routing.isEmpty()
+                    ? b.filter(f -> f.wildcard(w -> w.field("_routing").value("*")))
+                    : b.mustNot(m -> m.term(t -> t.field("_routing").value(routing)));
+        }))));
+        try {
+            DeleteByQueryResponse response = client.deleteByQuery(d -> d
+                    .index(index)
+                    .conflicts(Conflicts.Proceed)
+                    .query(q -> q.bool(b -> b.should(elsewhere).minimumShouldMatch("1"))));
+            if (response.deleted() != null && response.deleted() > 0) {
+                log.debug("Deleted {} copies under a previous routing", response.deleted());
+            }
+        } catch (Exception e) {
+            // The batch is still written; only the stale copies survive
+            log.warn("Deleting copies under other routings failed for {} documents: {}", operations.size(), e.getMessage());
+        }
+    }
+
+    private void fail(BulkOperation operation) {
+        failed.incrementAndGet();
+        String id = id(operation);
+        if (id != null) {
+            failureListener.accept(id);
+        }
+    }
+
+    private static String id(BulkOperation operation) {
+        return operation.isIndex() ? operation.index().id()
+                : operation.isUpdate() ? operation.update().id()
+                : operation.isCreate() ? operation.create().id()
+                : operation.isDelete() ? operation.delete().id() : null;
+    }
+
+    /**
+     * Flush and wait for every in-flight request to finish.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        flush();
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.smoothOrg.ingestion.delta;
+
+import com.smoothOrg.services.elastic.ReindexService;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 64-bit fingerprints of normalised product documents.
+ * <p>
+ * The price fingerprint covers the fields that change between price syncs; the content
+ * fingerprint covers everything else except timestamps. A document whose content fingerprint
+ * is unchanged only needs the price fields sent as a partial update.
+ */
+public final class DocumentFingerprint {
+
+    public static final List<String> PRICE_FIELDS = List.of(
+            "selling_price", "mrp", "discount_percent", "discount_text",
+            "availability", "inventory", "stock_status");
+
+    private static final List<String> IGNORED_FIELDS = List.of("created_at", "updated_at", ReindexService.INGESTED_AT);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private DocumentFingerprint() {
+    }
+
+    public static long price(Map<String, Object> document) {
+        long hash = FNV_OFFSET;
+        for (String field : PRICE_FIELDS) {
+            hash = mix(hash, field, document.get(field));
+        }
+        return finish(hash);
+    }
+
+    public static long content(Map<String, Object> document) {
+        long hash = FNV_OFFSET;
+        // Sorted so field order in the feed does not matter
+        for (Map.Entry<String, Object> entry : new TreeMap<>(document).entrySet()) {
+            String field = entry.getKey();
+            if (PRICE_FIELDS.contains(field) || IGNORED_FIELDS.contains(field)) continue;
+            hash = mix(hash, field, entry.getValue());
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Partial document with the price fields (and the timestamps) for an {@code _update}.
+     */
+    public static Map<String, Object> priceUpdate(Map<String, Object> document) {
+        Map<String, Object> partial = new LinkedHashMap<>();
+        for (String field : PRICE_FIELDS) {
+            if (document.containsKey(field)) partial.put(field, document.get(field));
+        }
+        if (document.containsKey("updated_at")) partial.put("updated_at", document.get("updated_at"));
+        if (document.containsKey(ReindexService.INGESTED_AT)) {
+            partial.put(ReindexService.INGESTED_AT, document.get(ReindexService.INGESTED_AT));
+        }
+        return partial;
+    }
+
+    public static long hash(String value) {
+        return finish(update(FNV_OFFSET, value));
+    }
+
+    private static long mix(long hash, String field, Object value) {
+        hash = update(hash, field);
+        hash = (hash ^ '=') * FNV_PRIME;
+        hash = update(hash, value == null ? "\u0000" : value.toString());
+        return (hash ^ ';') * FNV_PRIME;
+    }
+
+    private static long update(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 finaliser; spreads FNV's weak low bits before they are used as table indexes.
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb53fe1a5ae3bL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
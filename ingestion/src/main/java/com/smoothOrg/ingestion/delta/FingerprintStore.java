@@ -0,0 +1,224 @@
+package com.smoothOrg.ingestion.delta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Per-document fingerprints of the last ingested version, kept in a memory-mapped file.
+ * <p>
+ * The file is an open-addressing hash table (linear probing) of fixed 32-byte slots:
+ * a 64-bit hash of the document id, the price fingerprint, the content fingerprint and the
+ * routing the document was written with ({@code GeoRouting.toLong}).
+ * Nothing is deserialised on open, so a store of millions of documents is usable immediately
+ * and costs 32 bytes per document on disk. The table doubles when it is 70% full, up to
+ * {@link #MAX_CAPACITY} slots (one mapping of at most 1 GB, about 23 million documents); a store
+ * that would need more fails instead of growing.
+ * <p>
+ * Not thread safe; one ingestion run owns the store.
+ */
+public class FingerprintStore implements Closeable {
+
+    private static final int MAGIC = 0x46505332; // "FPS2"
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 32;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+    // Largest power of two whose file still fits one mapping (offsets of a MappedByteBuffer are ints)
+    static final int MAX_CAPACITY = 1 << 25;
+
+    /**
+     * Fingerprints of one document.
+     *
+     * @param routing routing it was last written with, 0 when routed by id
+     */
+    public record Fingerprint(long price, long content, long routing) {
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private FingerprintStore(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open the store at {@code file}, creating it when missing or unreadable.
+     */
+    public static FingerprintStore open(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FingerprintStore store = new FingerprintStore(channel);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        if (channel.size() >= HEADER_BYTES) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int storedCapacity = header.getInt(4);
+            if (header.getInt(0) == MAGIC && Integer.bitCount(storedCapacity) == 1
+                    && storedCapacity <= MAX_CAPACITY && channel.size() == bytesFor(storedCapacity)) {
+                capacity = storedCapacity;
+                size = (int) header.getLong(8);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytesFor(capacity));
+                return;
+            }
+        }
+        // Missing, older format or foreign file: start empty
+        channel.truncate(0);
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        size = 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytesFor(capacity));
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(offset(slot), 0L);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        buffer.putLong(8, 0L);
+    }
+
+    public Fingerprint get(String id) {
+        int slot = find(key(id));
+        if (slot < 0) return null;
+        int offset = offset(slot);
+        return new Fingerprint(buffer.getLong(offset + 8), buffer.getLong(offset + 16), buffer.getLong(offset + 24));
+    }
+
+    public void put(String id, long price, long content, long routing) throws IOException {
+        long key = key(id);
+        int slot = find(key);
+        if (slot < 0) {
+            if (size + 1 > capacity * MAX_LOAD) {
+                grow();
+            }
+            slot = insertionSlot(key);
+            size++;
+            buffer.putLong(8, size);
+        }
+        write(slot, key, price, content, routing);
+    }
+
+    /**
+     * Forget a document so the next run re-indexes it in full.
+     */
+    public void remove(String id) {
+        int slot = find(key(id));
+        if (slot < 0) return;
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int mask = capacity - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (true) {
+            long key = buffer.getLong(offset(next));
+            if (key == 0) break;
+            int home = home(key);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                int from = offset(next);
+                write(hole, key, buffer.getLong(from + 8), buffer.getLong(from + 16), buffer.getLong(from + 24));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        buffer.putLong(offset(hole), 0L);
+        size--;
+        buffer.putLong(8, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void grow() throws IOException {
+        int oldCapacity = capacity;
+        if (oldCapacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Fingerprint store is full: " + size + " documents in " + capacity
+                    + " slots; load this index with incremental ingestion off");
+        }
+        long[] entries = new long[size * 4];
+        int count = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = offset(slot);
+            long key = buffer.getLong(offset);
+            if (key != 0) {
+                entries[count++] = key;
+                entries[count++] = buffer.getLong(offset + 8);
+                entries[count++] = buffer.getLong(offset + 16);
+                entries[count++] = buffer.getLong(offset + 24);
+            }
+        }
+        allocate(oldCapacity * 2);
+        for (int i = 0; i < count; i += 4) {
+            write(insertionSlot(entries[i]), entries[i], entries[i + 1], entries[i + 2], entries[i + 3]);
+        }
+        size = count / 4;
+        buffer.putLong(8, size);
+    }
+
+    private int find(long key) {
+        int mask = capacity - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            long stored = buffer.getLong(offset(slot));
+            if (stored == key) return slot;
+            if (stored == 0) return -1;
+        }
+    }
+
+    private int insertionSlot(long key) {
+        int mask = capacity - 1;
+        int slot = home(key);
+        while (buffer.getLong(offset(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void write(int slot, long key, long price, long content, long routing) {
+        int offset = offset(slot);
+        buffer.putLong(offset, key);
+        buffer.putLong(offset + 8, price);
+        buffer.putLong(offset + 16, content);
+        buffer.putLong(offset + 24, routing);
+    }
+
+    private int home(long key) {
+        return (int) (key ^ (key >>> 32)) & (capacity - 1);
+    }
+
+    private static long key(String id) {
+        long key = DocumentFingerprint.hash(id);
+        return key == 0 ? 1 : key; // 0 marks an empty slot
+    }
+
+    private static int offset(int slot) {
+        return Math.toIntExact(HEADER_BYTES + (long) slot * SLOT_BYTES);
+    }
+
+    private static long bytesFor(int capacity) {
+        return HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    }
+}
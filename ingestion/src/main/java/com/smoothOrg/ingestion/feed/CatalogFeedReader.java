@@ -0,0 +1,140 @@
+package com.smoothOrg.ingestion.feed;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams raw records from a platform catalog feed, one record at a time.
+ * <p>
+ * Supported formats, chosen by file extension:
+ * <ul>
+ *     <li>{@code .ndjson} / {@code .jsonl} / {@code .json}: one JSON object per line</li>
+ *     <li>{@code .csv}: header row followed by comma-separated values (quoted fields allowed)</li>
+ * </ul>
+ * Only the current line is held in memory, so feeds of any size can be read.
+ */
+public class CatalogFeedReader implements Iterator<Map<String, Object>>, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    private final List<String> header;
+    private Map<String, Object> next;
+    private long lineNumber;
+
+    private CatalogFeedReader(BufferedReader reader, boolean csv) throws IOException {
+        this.reader = reader;
+        this.csv = csv;
+        if (csv) {
+            String headerLine = reader.readLine();
+            lineNumber++;
+            this.header = headerLine == null ? List.of() : parseCsvLine(headerLine);
+        } else {
+            this.header = List.of();
+        }
+    }
+
+    public static CatalogFeedReader open(Path feed) throws IOException {
+        String name = feed.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean csv = name.endsWith(".csv");
+        if (!csv && !name.endsWith(".ndjson") && !name.endsWith(".jsonl") && !name.endsWith(".json")) {
+            throw new IllegalArgumentException("Unsupported feed format: " + feed);
+        }
+        return new CatalogFeedReader(Files.newBufferedReader(feed, StandardCharsets.UTF_8), csv);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                next = csv ? toRecord(parseCsvLine(line)) : MAPPER.readValue(line, MAP_TYPE);
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read feed at line " + lineNumber, e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Map<String, Object> record = next;
+        next = null;
+        return record;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Map<String, Object> toRecord(List<String> values) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        for (int i = 0; i < header.size() && i < values.size(); i++) {
+            String value = values.get(i);
+            if (!value.isEmpty()) {
+                record.put(header.get(i).trim(), value);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Split a CSV line; double quotes wrap fields containing commas and {@code ""} escapes a quote.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,151 @@
+package com.smoothOrg.ingestion.feed;
+
+import com.smoothOrg.services.elastic.ReindexService;
+import com.smoothOrg.services.util.GeohashUtils;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps raw feed records onto the {@code grocery_products_v1} document schema.
+ * <p>
+ * Platforms export slightly different shapes (strings for numbers, missing availability,
+ * coordinates instead of geohash); this normalises types and fills derived fields so every
+ * indexed document looks like the hand-written samples.
+ */
+public class ProductNormalizer {
+
+    private static final List<String> TEXT_FIELDS = List.of(
+            "product_name", "brand_name", "categories", "sub_categories", "breadcrumbs",
+            "product_url", "image_url", "quantity", "description", "nutritional_info", "ingredients",
+            "discount_text", "stock_status", "pincode", "city", "country_of_origin", "shelf_life",
+            "fssai_license", "manufacturer_name", "manufacturer_address", "how_to_use", "product_details");
+
+    private final int geohashPrecision;
+
+    public ProductNormalizer(int geohashPrecision) {
+        this.geohashPrecision = geohashPrecision;
+    }
+
+    /**
+     * Document id used by the index: {@code <platform>_<product_id>}.
+     */
+    public static String documentId(Map<String, Object> document) {
+        return document.get("platform") + "_" + document.get("product_id");
+    }
+
+    /**
+     * Normalise one record.
+     *
+     * @return the document, or {@code null} when the record lacks platform, product id or price
+     */
+    public Map<String, Object> normalize(Map<String, Object> raw) {
+        String platform = text(raw.get("platform"));
+        String productId = text(raw.get("product_id"));
+        Double sellingPrice = decimal(raw.get("selling_price"));
+        if (platform == null || productId == null || sellingPrice == null) {
+            return null;
+        }
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("platform", platform.toLowerCase(Locale.ROOT));
+        document.put("product_id", productId);
+        for (String field : TEXT_FIELDS) {
+            String value = text(raw.get(field));
+            if (value != null) document.put(field, value);
+        }
+
+        Double mrp = decimal(raw.get("mrp"));
+        document.put("mrp", mrp != null ? mrp : sellingPrice);
+        document.put("selling_price", sellingPrice);
+        Double discount = decimal(raw.get("discount_percent"));
+        if (discount == null && mrp != null && mrp > 0) {
+            discount = Math.round((mrp - sellingPrice) / mrp * 1000) / 10.0;
+        }
+        if (discount != null) document.put("discount_percent", discount);
+
+        Integer inventory = integer(raw.get("inventory"));
+        if (inventory != null) document.put("inventory", inventory);
+        document.put("availability", availability(raw.get("availability"), (String) document.get("stock_status"), inventory));
+
+        Double merchantId = decimal(raw.get("merchant_id"));
+        if (merchantId != null) document.put("merchant_id", merchantId.longValue());
+
+        if (raw.get("product_attributes") instanceof Map<?, ?> attributes) {
+            document.put("product_attributes", attributes);
+        }
+
+        putLocation(raw, document);
+
+        String now = Instant.now().toString();
+        String createdAt = text(raw.get("created_at"));
+        String updatedAt = text(raw.get("updated_at"));
+        document.put("created_at", createdAt != null ? createdAt : now);
+        document.put("updated_at", updatedAt != null ? updatedAt : now);
+        // When this copy was written, whatever the feed says; a reindex catches up on it
+        document.put(ReindexService.INGESTED_AT, now);
+        return document;
+    }
+
+    private void putLocation(Map<String, Object> raw, Map<String, Object> document) {
+        Double latitude = decimal(raw.get("latitude"));
+        Double longitude = decimal(raw.get("longitude"));
+        String location = text(raw.get("location"));
+        if ((latitude == null || longitude == null) && location != null && location.contains(",")) {
+            String[] parts = location.split(",", 2);
+            latitude = decimal(parts[0]);
+            longitude = decimal(parts[1]);
+        }
+
+        String geohash = text(raw.get("geohash"));
+        if (geohash == null && latitude != null && longitude != null) {
+            geohash = GeohashUtils.encode(latitude, longitude, geohashPrecision);
+        }
+        if (geohash != null) {
+            // Searches match cells at this precision exactly
+            document.put("geohash", geohash.length() > geohashPrecision ? geohash.substring(0, geohashPrecision) : geohash);
+        }
+        if (latitude != null && longitude != null) {
+            document.put("location", latitude + "," + longitude);
+        }
+    }
+
+    private static boolean availability(Object raw, String stockStatus, Integer inventory) {
+        if (raw instanceof Boolean available) return available;
+        String value = text(raw);
+        if (value != null) {
+            String normalized = value.toLowerCase(Locale.ROOT);
+            return normalized.equals("true") || normalized.equals("1") || normalized.equals("yes")
+                    || normalized.equals("in_stock") || normalized.equals("available");
+        }
+        if (stockStatus != null) {
+            return stockStatus.equalsIgnoreCase("in_stock");
+        }
+        return inventory == null || inventory > 0;
+    }
+
+    private static String text(Object value) {
+        if (value == null) return null;
+        String text = value.toString().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static Double decimal(Object value) {
+        if (value instanceof Number number) return number.doubleValue();
+        String text = text(value);
+        if (text == null) return null;
+        try {
+            return Double.parseDouble(text.replace("₹", "").replace(",", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Integer integer(Object value) {
+        Double number = decimal(value);
+        return number != null ? (int) Math.round(number) : null;
+    }
+}
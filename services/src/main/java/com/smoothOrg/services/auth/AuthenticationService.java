@@ -5,6 +5,7 @@ import com.smoothOrg.domain.repository.UserRepository;
 import com.smoothOrg.services.security.JwtService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -55,14 +56,17 @@ public class AuthenticationService {
      * Authenticate user and generate token
      */
     public String authenticate(String email, String password) {
-        // Authenticate
-        authenticationManager.authenticate(
+        // Authenticate; the provider already loaded the user details
+        Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(email, password)
         );
+        UserDetails userDetails = authentication.getPrincipal() instanceof UserDetails details
+                ? details
+                : userDetailsService.loadUserByUsername(email);
 
-        // Generate token
-        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-        return jwtService.generateToken(userDetails);
+        // Generate token with the user id and authorities embedded, so requests need no lookup
+        User user = getUserByEmail(email);
+        return jwtService.generateToken(user.getId(), userDetails);
     }
 
     /**
@@ -0,0 +1,64 @@
+package com.smoothOrg.services.cart;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Meters for cart pricing, tagged by the endpoint that priced the cart.
+ * <ul>
+ *     <li>{@code cart.items} / {@code cart.platforms}: distribution of cart sizes and of the
+ *     number of platforms the items are listed on</li>
+ *     <li>{@code cart.calculation}: time to price a cart, end to end</li>
+ *     <li>{@code cart.optimizer}: time spent in {@link CartOptimizer}, tagged {@code exact}
+ *     false when the search budget ran out</li>
+ * </ul>
+ */
+@Component
+public class CartMetrics {
+
+    private final MeterRegistry registry;
+
+    public CartMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordCart(String endpoint, CartPricingModel model) {
+        DistributionSummary.builder("cart.items")
+                .description("Items per priced cart")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(model.itemCount());
+        DistributionSummary.builder("cart.platforms")
+                .description("Platforms the items of a priced cart are listed on")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(model.platformCount());
+    }
+
+    public <T> T timeCalculation(String endpoint, Supplier<T> calculation) {
+        return Timer.builder("cart.calculation")
+                .description("Time to price a cart")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(calculation);
+    }
+
+    public Timer.Sample startOptimizer() {
+        return Timer.start(registry);
+    }
+
+    public void stopOptimizer(Timer.Sample sample, boolean exact) {
+        sample.stop(Timer.builder("cart.optimizer")
+                .description("Time spent choosing the cheapest platform combination")
+                .tag("exact", String.valueOf(exact))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -0,0 +1,462 @@
+package com.smoothOrg.services.cart;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact fee-aware cart optimizer.
+ * <p>
+ * Picking the cheapest platform per item and adding fees afterwards is not optimal once
+ * delivery fees, free-delivery thresholds and per-platform handling/platform fees are counted.
+ * This optimizer searches item-to-platform assignments with all fees included:
+ * <ul>
+ *     <li>every subset of platforms is given a lower bound (fixed fees + cheapest price per item
+ *     within the subset + delivery fees that can never be waived) and subsets are visited in
+ *     ascending bound order;</li>
+ *     <li>each subset is solved by branch-and-bound over items, ordered by regret, pruning
+ *     branches whose extra price exceeds the delivery fees still avoidable.</li>
+ * </ul>
+ * The result is the best plan for each of the top-K cheapest platform subsets. Most carts finish
+ * in well under a millisecond, but delivery fees that are large next to the price differences
+ * and free-delivery thresholds near a platform's share of the cart make the search explode
+ * whatever the platform count. It therefore stops once it has run for
+ * {@code app.cart.optimizer.time-budget-ms} and flags the plans it has as not exact. Carts are
+ * limited to {@link #MAX_PLATFORMS} platforms, which keeps the per-subset bounds cheap.
+ * <p>
+ * Prices are passed as a row-major matrix of line totals (unit price x quantity)
+ * {@code prices[item * platformCount + platform]}; {@link Double#NaN} marks a line that cannot
+ * be bought on that platform.
+ */
+@Service
+public class CartOptimizer {
+
+    public static final int MAX_PLATFORMS = 8;
+    public static final long DEFAULT_TIME_BUDGET_MS = 50;
+
+    private static final double EPSILON = 1e-9;
+    // Nodes between clock reads
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long timeBudgetNanos;
+
+    public CartOptimizer() {
+        this(DEFAULT_TIME_BUDGET_MS);
+    }
+
+    @Autowired
+    public CartOptimizer(@Value("${app.cart.optimizer.time-budget-ms:50}") long timeBudgetMs) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeBudgetMs));
+    }
+
+    /**
+     * Find the cheapest plan (all fees included).
+     */
+    public Plan optimize(double[] prices, int itemCount, PlatformFeeSchedule fees) {
+        return optimize(prices, itemCount, fees, 1).get(0);
+    }
+
+    /**
+     * Find the best plans for the {@code topK} cheapest distinct platform sets, cheapest first.
+     */
+    public List<Plan> optimize(double[] prices, int itemCount, PlatformFeeSchedule fees, int topK) {
+        int platformCount = fees.platformCount();
+        if (platformCount > MAX_PLATFORMS) {
+            throw new IllegalArgumentException("At most " + MAX_PLATFORMS + " platforms are supported, got " + platformCount);
+        }
+        if (prices.length < itemCount * platformCount) {
+            throw new IllegalArgumentException("Price matrix is smaller than " + itemCount + " x " + platformCount);
+        }
+        return new Search(prices, itemCount, fees, Math.max(1, topK), System.nanoTime() + timeBudgetNanos).run();
+    }
+
+    /**
+     * An assignment of items to platforms together with its full cost.
+     *
+     * @param assignment   platform ordinal per item, or -1 when the item is unavailable everywhere
+     * @param platformMask bit set of the platforms used by the plan
+     * @param exact        false when the time budget ran out before optimality was proven
+     */
+    public record Plan(int[] assignment,
+                       int platformMask,
+                       double subtotal,
+                       double deliveryFee,
+                       double handlingCharge,
+                       double platformFee,
+                       double totalCost,
+                       boolean exact) {
+
+        public boolean usesPlatform(int platform) {
+            return (platformMask & (1 << platform)) != 0;
+        }
+    }
+
+    /**
+     * Per-call search state; all working storage is primitive arrays sized once per call.
+     */
+    private static final class Search {
+        private final double[] prices;
+        private final int platformCount;
+        private final int itemCount;
+        private final PlatformFeeSchedule fees;
+        private final int topK;
+        private final long deadline;
+
+        // Items available on at least one platform, in search order
+        private final int[] order;
+        private final int activeCount;
+        private final int[] itemMask;
+        // Platforms per active item sorted by ascending price (available ones only, -1 terminated)
+        private final int[] sortedPlatforms;
+        // Sum of all available prices per platform: the most a platform can ever reach
+        private final double[] columnTotal;
+
+        // Per-subset scratch
+        private final double[] minAt;
+        private final double[] suffixMin;
+        private final double[] suffixReach;
+        private final int[] suffixCount;
+        private final double[] suffixMinDelta;
+        private final double[] suffixCheapMass;
+        private final double[] suffixMinMove;
+        private final double[] subtotal;
+        private final int[] usedCount;
+        private final int[] current;
+        private final int[] best;
+        private double bestCost;
+        private double bound;
+        private int subset;
+        private double subsetFixedFee;
+        private long nodes;
+        private boolean expired;
+
+        // Global top-K, sorted by cost
+        private final List<Plan> plans = new ArrayList<>();
+
+        Search(double[] prices, int itemCount, PlatformFeeSchedule fees, int topK, long deadline) {
+            this.prices = prices;
+            this.deadline = deadline;
+            this.itemCount = itemCount;
+            this.platformCount = fees.platformCount();
+            this.fees = fees;
+            this.topK = topK;
+
+            int p = platformCount;
+            int[] active = new int[itemCount];
+            double[] regret = new double[itemCount];
+            int[] masks = new int[itemCount];
+            this.columnTotal = new double[p];
+            int count = 0;
+            for (int i = 0; i < itemCount; i++) {
+                int mask = 0;
+                double first = Double.POSITIVE_INFINITY;
+                double second = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < p; j++) {
+                    double price = prices[i * p + j];
+                    if (Double.isNaN(price)) continue;
+                    mask |= 1 << j;
+                    columnTotal[j] += price;
+                    if (price < first) {
+                        second = first;
+                        first = price;
+                    } else if (price < second) {
+                        second = price;
+                    }
+                }
+                if (mask != 0) {
+                    active[count] = i;
+                    masks[i] = mask;
+                    // Items with a single option are forced; branch on them first
+                    regret[i] = second - first;
+                    count++;
+                }
+            }
+            this.activeCount = count;
+            this.order = Arrays.copyOf(active, count);
+            sortByDescending(order, regret);
+
+            this.itemMask = new int[count];
+            this.sortedPlatforms = new int[count * (p + 1)];
+            for (int k = 0; k < count; k++) {
+                int item = order[k];
+                itemMask[k] = masks[item];
+                int base = k * (p + 1);
+                int n = 0;
+                for (int j = 0; j < p; j++) {
+                    double price = prices[item * p + j];
+                    if (Double.isNaN(price)) continue;
+                    // Insertion sort; platform count is tiny
+                    int pos = n++;
+                    while (pos > 0 && prices[item * p + sortedPlatforms[base + pos - 1]] > price) {
+                        sortedPlatforms[base + pos] = sortedPlatforms[base + pos - 1];
+                        pos--;
+                    }
+                    sortedPlatforms[base + pos] = j;
+                }
+                sortedPlatforms[base + n] = -1;
+            }
+
+            this.minAt = new double[count];
+            this.suffixMin = new double[count + 1];
+            this.suffixReach = new double[(count + 1) * p];
+            this.suffixCount = new int[(count + 1) * p];
+            this.suffixMinDelta = new double[(count + 1) * p];
+            this.suffixCheapMass = new double[(count + 1) * p];
+            this.suffixMinMove = new double[(count + 1) * p];
+            this.subtotal = new double[p];
+            this.usedCount = new int[p];
+            this.current = new int[count];
+            this.best = new int[count];
+        }
+
+        List<Plan> run() {
+            if (activeCount == 0) {
+                int[] assignment = new int[itemCount];
+                Arrays.fill(assignment, -1);
+                return List.of(new Plan(assignment, 0, 0, 0, 0, 0, 0, true));
+            }
+
+            int subsetCount = 1 << platformCount;
+            int[] candidates = new int[subsetCount];
+            double[] lowerBounds = new double[subsetCount];
+            int n = 0;
+            for (int s = 1; s < subsetCount; s++) {
+                double lb = subsetLowerBound(s);
+                if (Double.isInfinite(lb)) continue;
+                candidates[n] = s;
+                lowerBounds[s] = lb;
+                n++;
+            }
+            candidates = Arrays.copyOf(candidates, n);
+            sortByAscending(candidates, lowerBounds);
+
+            for (int s : candidates) {
+                double kth = plans.size() < topK ? Double.POSITIVE_INFINITY : plans.get(topK - 1).totalCost();
+                if (lowerBounds[s] >= kth - EPSILON) break;
+                solveSubset(s, kth);
+                if (expired) break;
+            }
+            if (expired) {
+                plans.replaceAll(plan -> new Plan(plan.assignment(), plan.platformMask(), plan.subtotal(),
+                        plan.deliveryFee(), plan.handlingCharge(), plan.platformFee(), plan.totalCost(), false));
+            }
+            return plans;
+        }
+
+        /**
+         * Lower bound for plans that use exactly the platforms in {@code s};
+         * infinite when some item cannot be bought there.
+         */
+        private double subsetLowerBound(int s) {
+            double total = 0;
+            for (int k = 0; k < activeCount; k++) {
+                if ((itemMask[k] & s) == 0) return Double.POSITIVE_INFINITY;
+                total += minPriceIn(k, s);
+            }
+            for (int bits = s; bits != 0; bits &= bits - 1) {
+                int j = Integer.numberOfTrailingZeros(bits);
+                total += fees.fixedFee(j);
+                if (columnTotal[j] < fees.freeDeliveryThreshold(j)) {
+                    total += fees.deliveryFee(j);
+                }
+            }
+            return total;
+        }
+
+        private double minPriceIn(int k, int s) {
+            int base = k * (platformCount + 1);
+            for (int idx = base; sortedPlatforms[idx] >= 0; idx++) {
+                int j = sortedPlatforms[idx];
+                if ((s & (1 << j)) != 0) return prices[order[k] * platformCount + j];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        private void solveSubset(int s, double kth) {
+            int p = platformCount;
+            subset = s;
+            subsetFixedFee = 0;
+            for (int bits = s; bits != 0; bits &= bits - 1) {
+                subsetFixedFee += fees.fixedFee(Integer.numberOfTrailingZeros(bits));
+            }
+
+            // Suffix aggregates used by the node bound
+            suffixMin[activeCount] = 0;
+            Arrays.fill(suffixReach, activeCount * p, (activeCount + 1) * p, 0);
+            Arrays.fill(suffixCount, activeCount * p, (activeCount + 1) * p, 0);
+            Arrays.fill(suffixMinDelta, activeCount * p, (activeCount + 1) * p, Double.POSITIVE_INFINITY);
+            Arrays.fill(suffixCheapMass, activeCount * p, (activeCount + 1) * p, 0);
+            Arrays.fill(suffixMinMove, activeCount * p, (activeCount + 1) * p, Double.POSITIVE_INFINITY);
+            for (int k = activeCount - 1; k >= 0; k--) {
+                double min = minPriceIn(k, s);
+                minAt[k] = min;
+                suffixMin[k] = suffixMin[k + 1] + min;
+                int row = order[k] * p;
+                for (int j = 0; j < p; j++) {
+                    int at = k * p + j;
+                    int next = at + p;
+                    double price = prices[row + j];
+                    boolean usable = (s & (1 << j)) != 0 && !Double.isNaN(price);
+                    suffixReach[at] = suffixReach[next] + (usable ? price : 0);
+                    suffixCount[at] = suffixCount[next] + (usable ? 1 : 0);
+                    boolean cheapest = usable && price <= min + EPSILON;
+                    suffixMinDelta[at] = usable ? Math.min(suffixMinDelta[next], price - min) : suffixMinDelta[next];
+                    suffixCheapMass[at] = suffixCheapMass[next] + (cheapest ? price : 0);
+                    suffixMinMove[at] = usable && !cheapest ? Math.min(suffixMinMove[next], price - min) : suffixMinMove[next];
+                }
+            }
+
+            Arrays.fill(subtotal, 0);
+            Arrays.fill(usedCount, 0);
+            bestCost = Double.POSITIVE_INFINITY;
+            bound = kth;
+            branch(0, 0);
+
+            if (bestCost < Double.POSITIVE_INFINITY) {
+                addPlan(toPlan());
+            }
+        }
+
+        private void branch(int k, double committed) {
+            if (++nodes % CLOCK_INTERVAL == 0 && !expired && System.nanoTime() - deadline >= 0) {
+                expired = true;
+            }
+            // Keep descending once the budget is spent so the current branch still completes a plan
+            if (expired && Math.min(bestCost, bound) < Double.POSITIVE_INFINITY) return;
+            int p = platformCount;
+            if (k == activeCount) {
+                double cost = committed + subsetFixedFee;
+                for (int bits = subset; bits != 0; bits &= bits - 1) {
+                    int j = Integer.numberOfTrailingZeros(bits);
+                    if (usedCount[j] == 0) return;
+                    cost += fees.deliveryFeeFor(j, subtotal[j]);
+                }
+                if (cost < bestCost - EPSILON && cost < bound - EPSILON) {
+                    bestCost = cost;
+                    System.arraycopy(current, 0, best, 0, activeCount);
+                }
+                return;
+            }
+
+            // Node lower bound and the delivery fees that can still be avoided. Per platform the
+            // bound charges the extra price of moving items onto it (to use it at all, or to reach
+            // free delivery) or its delivery fee; moved items are distinct, so the terms add up.
+            double lb = committed + suffixMin[k] + subsetFixedFee;
+            double slack = 0;
+            for (int bits = subset; bits != 0; bits &= bits - 1) {
+                int j = Integer.numberOfTrailingZeros(bits);
+                int at = k * p + j;
+                double useTerm = 0;
+                if (usedCount[j] == 0) {
+                    if (suffixCount[at] == 0) return;
+                    useTerm = suffixMinDelta[at];
+                }
+                double need = fees.freeDeliveryThreshold(j) - subtotal[j];
+                if (need <= 0) {
+                    lb += useTerm;
+                } else if (suffixReach[at] < need) {
+                    lb += useTerm + fees.deliveryFee(j);
+                } else {
+                    double feeTerm = suffixCheapMass[at] >= need ? 0 : Math.min(fees.deliveryFee(j), suffixMinMove[at]);
+                    lb += Math.max(useTerm, feeTerm);
+                    slack += fees.deliveryFee(j);
+                }
+            }
+            double limit = Math.min(bestCost, bound);
+            if (lb >= limit - EPSILON) return;
+
+            int item = order[k];
+            int base = k * (p + 1);
+            double min = minAt[k];
+            boolean metExplored = false;
+            for (int idx = base; sortedPlatforms[idx] >= 0; idx++) {
+                int j = sortedPlatforms[idx];
+                if ((subset & (1 << j)) == 0) continue;
+                double price = prices[item * p + j];
+                boolean used = usedCount[j] > 0;
+                // An unused platform may need this item just to be part of the plan
+                if (used && price - min > slack + EPSILON) continue;
+                boolean met = used && subtotal[j] >= fees.freeDeliveryThreshold(j);
+                if (met) {
+                    // Once free delivery is reached, only the cheapest such platform matters
+                    if (metExplored) continue;
+                    metExplored = true;
+                }
+                current[k] = j;
+                subtotal[j] += price;
+                usedCount[j]++;
+                branch(k + 1, committed + price);
+                usedCount[j]--;
+                subtotal[j] -= price;
+            }
+        }
+
+        private Plan toPlan() {
+            int p = platformCount;
+            int[] assignment = new int[itemCount];
+            Arrays.fill(assignment, -1);
+            double[] perPlatform = new double[p];
+            double itemsTotal = 0;
+            for (int k = 0; k < activeCount; k++) {
+                int item = order[k];
+                int j = best[k];
+                double price = prices[item * p + j];
+                assignment[item] = j;
+                perPlatform[j] += price;
+                itemsTotal += price;
+            }
+            double delivery = 0;
+            double handling = 0;
+            double platformFees = 0;
+            for (int bits = subset; bits != 0; bits &= bits - 1) {
+                int j = Integer.numberOfTrailingZeros(bits);
+                delivery += fees.deliveryFeeFor(j, perPlatform[j]);
+                handling += fees.handlingCharge(j);
+                platformFees += fees.platformFee(j);
+            }
+            return new Plan(assignment, subset, itemsTotal, delivery, handling, platformFees,
+                    itemsTotal + delivery + handling + platformFees, true);
+        }
+
+        private void addPlan(Plan plan) {
+            int pos = plans.size();
+            while (pos > 0 && plans.get(pos - 1).totalCost() > plan.totalCost()) {
+                pos--;
+            }
+            if (pos >= topK) return;
+            plans.add(pos, plan);
+            if (plans.size() > topK) {
+                plans.remove(plans.size() - 1);
+            }
+        }
+
+        private static void sortByDescending(int[] values, double[] keys) {
+            for (int i = 1; i < values.length; i++) {
+                int v = values[i];
+                int j = i - 1;
+                while (j >= 0 && keys[values[j]] < keys[v]) {
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                values[j + 1] = v;
+            }
+        }
+
+        private static void sortByAscending(int[] values, double[] keys) {
+            for (int i = 1; i < values.length; i++) {
+                int v = values[i];
+                int j = i - 1;
+                while (j >= 0 && keys[values[j]] > keys[v]) {
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                values[j + 1] = v;
+            }
+        }
+    }
+}
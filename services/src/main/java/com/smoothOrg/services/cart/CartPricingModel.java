@@ -0,0 +1,223 @@
+package com.smoothOrg.services.cart;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed pricing view of a cart, parsed once per request.
+ * <p>
+ * Cart items arrive as product maps with a nested {@code platforms} list. This model flattens
+ * them into a product table and unit-price / line-total matrices indexed by
+ * {@code item * platformCount + platform}, so calculations walk primitive arrays instead of
+ * re-streaming the nested maps for every platform and item. {@link Double#NaN} marks a line
+ * that cannot be bought on a platform: not available, or the indexed {@code inventory} is below
+ * the requested quantity.
+ */
+public final class CartPricingModel {
+
+    private final String[] platforms;
+    private final Map<String, Integer> platformOrdinals;
+    private final String[] productIds;
+    private final String[] productNames;
+    private final int[] quantities;
+    private final double[] unitPrices;
+    private final double[] lineTotals;
+    private final boolean[] listed;
+    private final boolean[] stockLimited;
+    private final Map<String, Object>[] sources;
+    private final int[] cheapest;
+
+    @SuppressWarnings("unchecked")
+    private CartPricingModel(String[] platforms, Map<String, Integer> platformOrdinals, int[] quantities) {
+        int itemCount = quantities.length;
+        this.platforms = platforms;
+        this.platformOrdinals = platformOrdinals;
+        this.productIds = new String[itemCount];
+        this.productNames = new String[itemCount];
+        this.quantities = quantities;
+        this.unitPrices = new double[itemCount * platforms.length];
+        this.lineTotals = new double[itemCount * platforms.length];
+        this.listed = new boolean[itemCount * platforms.length];
+        this.stockLimited = new boolean[itemCount * platforms.length];
+        this.sources = new Map[itemCount * platforms.length];
+        this.cheapest = new int[itemCount];
+        Arrays.fill(unitPrices, Double.NaN);
+        Arrays.fill(lineTotals, Double.NaN);
+    }
+
+    /**
+     * Parse product maps (as returned by search and stored in cart snapshots), one unit each.
+     */
+    public static CartPricingModel fromProducts(List<Map<String, Object>> items) {
+        int[] quantities = new int[items.size()];
+        Arrays.fill(quantities, 1);
+        return fromProducts(items, quantities);
+    }
+
+    /**
+     * Parse product maps with the requested quantity per item.
+     * Only the first listing of a platform per product is used.
+     */
+    public static CartPricingModel fromProducts(List<Map<String, Object>> items, int[] quantities) {
+        if (quantities.length != items.size()) {
+            throw new IllegalArgumentException("Expected " + items.size() + " quantities, got " + quantities.length);
+        }
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (Map<String, Object> item : items) {
+            for (Map<String, Object> platformData : platformsOf(item)) {
+                Object name = platformData.get("platform");
+                if (name instanceof String platform) {
+                    ordinals.putIfAbsent(platform, ordinals.size());
+                }
+            }
+        }
+        String[] platforms = new String[ordinals.size()];
+        ordinals.forEach((name, ordinal) -> platforms[ordinal] = name);
+
+        int[] units = new int[quantities.length];
+        for (int i = 0; i < quantities.length; i++) {
+            units[i] = Math.max(0, quantities[i]);
+        }
+        CartPricingModel model = new CartPricingModel(platforms, ordinals, units);
+        int platformCount = platforms.length;
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> item = items.get(i);
+            model.productIds[i] = (String) item.get("product_id");
+            model.productNames[i] = (String) item.get("product_name");
+            int row = i * platformCount;
+            int best = -1;
+            for (Map<String, Object> platformData : platformsOf(item)) {
+                Object name = platformData.get("platform");
+                if (!(name instanceof String)) continue;
+                int at = row + ordinals.get(name);
+                if (model.listed[at]) continue;
+                model.listed[at] = true;
+                model.sources[at] = platformData;
+                Object price = platformData.get("selling_price");
+                if (!Boolean.TRUE.equals(platformData.get("availability")) || !(price instanceof Number number)) continue;
+                model.unitPrices[at] = number.doubleValue();
+                if (platformData.get("inventory") instanceof Number inventory && inventory.longValue() < units[i]) {
+                    model.stockLimited[at] = true;
+                    continue;
+                }
+                model.lineTotals[at] = model.unitPrices[at] * units[i];
+                if (best < 0 || model.lineTotals[at] < model.lineTotals[row + best]) {
+                    best = at - row;
+                }
+            }
+            model.cheapest[i] = best;
+        }
+        return model;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> platformsOf(Map<String, Object> item) {
+        Object platformsObj = item.get("platforms");
+        if (platformsObj instanceof List) {
+            return (List<Map<String, Object>>) platformsObj;
+        }
+        return List.of();
+    }
+
+    public int itemCount() {
+        return productIds.length;
+    }
+
+    public int platformCount() {
+        return platforms.length;
+    }
+
+    public String platform(int platform) {
+        return platforms[platform];
+    }
+
+    public String[] platforms() {
+        return platforms.clone();
+    }
+
+    /**
+     * Ordinal of the given platform, or -1 when no cart item lists it.
+     */
+    public int platformOrdinal(String platform) {
+        Integer ordinal = platformOrdinals.get(platform);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String productId(int item) {
+        return productIds[item];
+    }
+
+    public String productName(int item) {
+        return productNames[item];
+    }
+
+    /**
+     * Whether the product has a listing on the platform (available or not).
+     */
+    public boolean isListed(int item, int platform) {
+        return listed[item * platforms.length + platform];
+    }
+
+    /**
+     * Whether the full quantity can be bought on the platform.
+     */
+    public boolean isAvailable(int item, int platform) {
+        return !Double.isNaN(lineTotals[item * platforms.length + platform]);
+    }
+
+    /**
+     * Whether the platform lists the product as available but its inventory cannot cover the quantity.
+     */
+    public boolean isStockLimited(int item, int platform) {
+        return stockLimited[item * platforms.length + platform];
+    }
+
+    /**
+     * Indexed inventory of the listing, or -1 when the listing has none.
+     */
+    public long inventory(int item, int platform) {
+        Map<String, Object> listing = sources[item * platforms.length + platform];
+        return listing != null && listing.get("inventory") instanceof Number inventory ? inventory.longValue() : -1;
+    }
+
+    public int quantity(int item) {
+        return quantities[item];
+    }
+
+    /**
+     * Selling price per unit, or {@link Double#NaN} when not available on the platform.
+     */
+    public double unitPrice(int item, int platform) {
+        return unitPrices[item * platforms.length + platform];
+    }
+
+    /**
+     * Unit price x quantity, or {@link Double#NaN} when the line cannot be bought on the platform.
+     */
+    public double lineTotal(int item, int platform) {
+        return lineTotals[item * platforms.length + platform];
+    }
+
+    /**
+     * Ordinal of the cheapest platform the full quantity can be bought on, or -1.
+     */
+    public int cheapestPlatform(int item) {
+        return cheapest[item];
+    }
+
+    /**
+     * The original platform listing, kept by reference for response payloads.
+     */
+    public Map<String, Object> source(int item, int platform) {
+        return sources[item * platforms.length + platform];
+    }
+
+    /**
+     * The backing line-total matrix ({@code item * platformCount + platform}); callers must not modify it.
+     */
+    public double[] lineTotalMatrix() {
+        return lineTotals;
+    }
+}
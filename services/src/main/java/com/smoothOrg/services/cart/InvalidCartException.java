@@ -0,0 +1,15 @@
+package com.smoothOrg.services.cart;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A cart the optimizer cannot price, e.g. one spanning more platforms than it supports.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCartException extends RuntimeException {
+
+    public InvalidCartException(String message) {
+        super(message);
+    }
+}
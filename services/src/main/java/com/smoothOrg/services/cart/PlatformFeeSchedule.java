@@ -0,0 +1,61 @@
+package com.smoothOrg.services.cart;
+
+/**
+ * Per-platform fee table indexed by platform ordinal.
+ * Kept as primitive arrays so the optimizer can evaluate fees without map lookups.
+ */
+public final class PlatformFeeSchedule {
+
+    private final double[] deliveryFee;
+    private final double[] freeDeliveryThreshold;
+    private final double[] handlingCharge;
+    private final double[] platformFee;
+
+    public PlatformFeeSchedule(int platformCount) {
+        this.deliveryFee = new double[platformCount];
+        this.freeDeliveryThreshold = new double[platformCount];
+        this.handlingCharge = new double[platformCount];
+        this.platformFee = new double[platformCount];
+    }
+
+    public void set(int platform, double delivery, double threshold, double handling, double platformCharge) {
+        deliveryFee[platform] = delivery;
+        freeDeliveryThreshold[platform] = threshold;
+        handlingCharge[platform] = handling;
+        platformFee[platform] = platformCharge;
+    }
+
+    public int platformCount() {
+        return deliveryFee.length;
+    }
+
+    public double deliveryFee(int platform) {
+        return deliveryFee[platform];
+    }
+
+    public double freeDeliveryThreshold(int platform) {
+        return freeDeliveryThreshold[platform];
+    }
+
+    public double handlingCharge(int platform) {
+        return handlingCharge[platform];
+    }
+
+    public double platformFee(int platform) {
+        return platformFee[platform];
+    }
+
+    /**
+     * Fees charged once a platform is used at all (handling + platform fee).
+     */
+    public double fixedFee(int platform) {
+        return handlingCharge[platform] + platformFee[platform];
+    }
+
+    /**
+     * Delivery fee for the given platform subtotal.
+     */
+    public double deliveryFeeFor(int platform, double subtotal) {
+        return subtotal >= freeDeliveryThreshold[platform] ? 0 : deliveryFee[platform];
+    }
+}
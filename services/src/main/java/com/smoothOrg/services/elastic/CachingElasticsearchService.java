@@ -0,0 +1,402 @@
+package com.smoothOrg.services.elastic;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.smoothOrg.services.util.GeohashUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Search result cache in front of {@link ElasticsearchServiceImpl}, for both its blocking and its
+ * {@link ElasticsearchAsyncService} methods; both share the same entries.
+ * <p>
+ * Product searches are cached per (index, query, geohash, size) in a Caffeine cache, which is
+ * bounded by size with W-TinyLFU eviction and by a write TTL. Indexing a document evicts the
+ * entries for its geohash, the nearby searches whose area covers it, and the geohash-less
+ * searches of that index; deleting one evicts
+ * the whole index since the deleted document's geohash is not known here.
+ * <p>
+ * Every cached result is also kept for {@code app.search-cache.stale-ttl-seconds}. When a search
+ * fails because Elasticsearch is degraded (see {@link ElasticsearchResilience#isDegraded}), the
+ * last result for the same key is served instead, however old; invalidation drops these too.
+ * <p>
+ * Autocomplete suggestions are kept in a {@link SuggestionTrie} per (index, geohash cell), with
+ * the cell coarsened to {@code app.suggest.geohash-precision} so nearby users share a trie.
+ * All other operations go straight to Elasticsearch.
+ */
+@Service
+@Primary
+public class CachingElasticsearchService implements ElasticsearchService, ElasticsearchAsyncService {
+
+    private final ElasticsearchServiceImpl delegate;
+    private final boolean enabled;
+    private final Cache<SearchKey, List<?>> cache;
+    private final Cache<SearchKey, List<?>> stale;
+    private final Cache<SuggestKey, SuggestionTrie> suggestions;
+    private final int maxSuggestions;
+    private final int suggestPrecision;
+    private final int trieMaxNodes;
+    private final LongAdder suggestHits = new LongAdder();
+    private final LongAdder suggestMisses = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    public CachingElasticsearchService(ElasticsearchServiceImpl delegate,
+                                       @Value("${app.search-cache.enabled:true}") boolean enabled,
+                                       @Value("${app.search-cache.max-entries:10000}") long maxEntries,
+                                       @Value("${app.search-cache.ttl-seconds:60}") long ttlSeconds,
+                                       @Value("${app.search-cache.stale-ttl-seconds:900}") long staleTtlSeconds,
+                                       @Value("${app.suggest.max-suggestions:10}") int maxSuggestions,
+                                       @Value("${app.suggest.geohash-precision:5}") int suggestPrecision,
+                                       @Value("${app.suggest.cache.max-cells:5000}") long maxCells,
+                                       @Value("${app.suggest.cache.max-nodes-per-cell:2000}") int trieMaxNodes,
+                                       @Value("${app.suggest.cache.ttl-seconds:300}") long suggestTtlSeconds) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.stale = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(ttlSeconds, staleTtlSeconds)))
+                .build();
+        this.maxSuggestions = maxSuggestions;
+        this.suggestPrecision = suggestPrecision;
+        this.trieMaxNodes = trieMaxNodes;
+        this.suggestions = Caffeine.newBuilder()
+                .maximumSize(maxCells)
+                .expireAfterWrite(Duration.ofSeconds(suggestTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Cache key; the query is normalised so trivially different spellings share an entry.
+     */
+    record SearchKey(String kind, String index, String query, String geohash, int size) {
+        static SearchKey of(String kind, String index, String query, String geohash, Integer size) {
+            String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+            return new SearchKey(kind, index, normalized, geohash, size != null ? size : -1);
+        }
+    }
+
+    /**
+     * Suggestion trie key; {@code cell} is null for suggestions without a location.
+     */
+    record SuggestKey(String index, String cell) {
+    }
+
+    @FunctionalInterface
+    private interface SearchCall<T> {
+        List<T> execute() throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> cached(SearchKey key, SearchCall<T> call) throws IOException {
+        if (!enabled) {
+            return call.execute();
+        }
+        List<?> hit = cache.getIfPresent(key);
+        if (hit != null) {
+            return (List<T>) hit;
+        }
+        List<T> results;
+        try {
+            results = List.copyOf(call.execute());
+        } catch (IOException | RuntimeException e) {
+            List<?> last = staleFor(key, e);
+            if (last == null) {
+                throw e;
+            }
+            return (List<T>) last;
+        }
+        store(key, results);
+        return results;
+    }
+
+    /**
+     * Non-blocking {@link #cached}: a hit is returned as a completed future, a miss is stored
+     * once the delegate's future succeeds.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<List<T>> cachedAsync(SearchKey key, Supplier<CompletableFuture<List<T>>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        List<?> hit = cache.getIfPresent(key);
+        if (hit != null) {
+            return CompletableFuture.completedFuture((List<T>) hit);
+        }
+        return call.get().handle((found, failure) -> {
+            if (failure != null) {
+                List<?> last = staleFor(key, failure);
+                if (last == null) {
+                    throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+                }
+                return (List<T>) last;
+            }
+            List<T> results = List.copyOf(found);
+            store(key, results);
+            return results;
+        });
+    }
+
+    private void store(SearchKey key, List<?> results) {
+        cache.put(key, results);
+        stale.put(key, results);
+    }
+
+    /**
+     * The last result for a key whose search failed because Elasticsearch is degraded, or null
+     * when the failure should reach the caller.
+     */
+    private List<?> staleFor(SearchKey key, Throwable failure) {
+        List<?> last = ElasticsearchResilience.isDegraded(failure) ? stale.getIfPresent(key) : null;
+        if (last != null) {
+            staleServed.increment();
+        }
+        return last;
+    }
+
+    @Override
+    public List<ProductDoc> searchProducts(String index, String query, Integer size) throws IOException {
+        return cached(SearchKey.of("text", index, query, null, size),
+                () -> delegate.searchProducts(index, query, size));
+    }
+
+    @Override
+    public List<ProductDoc> searchProductsByGeohash(String index, String query, String geohash, Integer size) throws IOException {
+        return cached(SearchKey.of("geohash", index, query, geohash, size),
+                () -> delegate.searchProductsByGeohash(index, query, geohash, size));
+    }
+
+    @Override
+    public List<ProductDoc> searchProductsNearGeohash(String index, String query, String geohash, Integer size) throws IOException {
+        return cached(SearchKey.of("nearby", index, query, geohash, size),
+                () -> delegate.searchProductsNearGeohash(index, query, geohash, size));
+    }
+
+    /**
+     * Suggestions come from the trie when it already knows the prefix. Otherwise the full
+     * {@code app.suggest.max-suggestions} are fetched, whatever {@code size} asks for, so every
+     * node holds the same top list and can tell whether it is complete.
+     */
+    @Override
+    public List<String> suggestProducts(String index, String prefix, String geohash, int size) throws IOException {
+        SuggestLookup lookup = lookupSuggestions(index, prefix, geohash, size);
+        if (lookup.cached() != null) {
+            return lookup.limited(lookup.cached());
+        }
+        if (lookup.trie() == null) {
+            return delegate.suggestProducts(index, prefix, lookup.cell(), lookup.limit());
+        }
+        return lookup.remember(delegate.suggestProducts(index, prefix, lookup.cell(), maxSuggestions), maxSuggestions);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> suggestProductsAsync(String index, String prefix, String geohash, int size) {
+        SuggestLookup lookup = lookupSuggestions(index, prefix, geohash, size);
+        if (lookup.cached() != null) {
+            return CompletableFuture.completedFuture(lookup.limited(lookup.cached()));
+        }
+        if (lookup.trie() == null) {
+            return delegate.suggestProductsAsync(index, prefix, lookup.cell(), lookup.limit());
+        }
+        return delegate.suggestProductsAsync(index, prefix, lookup.cell(), maxSuggestions)
+                .thenApply(found -> lookup.remember(found, maxSuggestions));
+    }
+
+    /**
+     * Where a suggestion request is answered from: the coarsened cell, its trie (null when the
+     * cache is disabled) and the trie's suggestions for the prefix, if it has them.
+     */
+    private record SuggestLookup(String cell, int limit, SuggestionTrie trie, String normalized, List<String> cached) {
+        List<String> remember(List<String> fetched, int requested) {
+            trie.put(normalized, fetched, fetched.size() < requested);
+            return limited(fetched);
+        }
+
+        List<String> limited(List<String> found) {
+            return found.size() > limit ? found.subList(0, limit) : found;
+        }
+    }
+
+    private SuggestLookup lookupSuggestions(String index, String prefix, String geohash, int size) {
+        int limit = Math.min(size, maxSuggestions);
+        String cell = StringUtils.hasText(geohash) ? geohash.toLowerCase(Locale.ROOT) : null;
+        if (cell != null && cell.length() > suggestPrecision) {
+            cell = cell.substring(0, suggestPrecision);
+        }
+        if (!enabled) {
+            return new SuggestLookup(cell, limit, null, null, null);
+        }
+        String normalized = SuggestionTrie.normalize(prefix);
+        SuggestionTrie trie = suggestions.get(new SuggestKey(index, cell), key -> new SuggestionTrie(trieMaxNodes));
+        List<String> found = trie.get(normalized);
+        if (found != null) {
+            suggestHits.increment();
+        } else {
+            suggestMisses.increment();
+        }
+        return new SuggestLookup(cell, limit, trie, normalized, found);
+    }
+
+    @Override
+    public List<ProductComparison> searchProductComparisons(String index, String query, String geohash, Integer size) throws IOException {
+        return cached(SearchKey.of("grouped", index, query, geohash, size),
+                () -> delegate.searchProductComparisons(index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsAsync(String index, String query, Integer size) {
+        return cachedAsync(SearchKey.of("text", index, query, null, size),
+                () -> delegate.searchProductsAsync(index, query, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsByGeohashAsync(String index, String query, String geohash, Integer size) {
+        return cachedAsync(SearchKey.of("geohash", index, query, geohash, size),
+                () -> delegate.searchProductsByGeohashAsync(index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsNearGeohashAsync(String index, String query, String geohash, Integer size) {
+        return cachedAsync(SearchKey.of("nearby", index, query, geohash, size),
+                () -> delegate.searchProductsNearGeohashAsync(index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductComparison>> searchProductComparisonsAsync(String index, String query, String geohash, Integer size) {
+        return cachedAsync(SearchKey.of("grouped", index, query, geohash, size),
+                () -> delegate.searchProductComparisonsAsync(index, query, geohash, size));
+    }
+
+    @Override
+    public boolean indexDocument(String index, String id, Map<String, Object> document) throws IOException {
+        boolean indexed = delegate.indexDocument(index, id, document);
+        Object geohash = document.get("geohash");
+        Predicate<SearchKey> outdated = key -> Objects.equals(key.index(), index)
+                && (key.geohash() == null || !(geohash instanceof String cell) || affects(key, cell));
+        cache.asMap().keySet().removeIf(outdated);
+        stale.asMap().keySet().removeIf(outdated);
+        suggestions.asMap().keySet().removeIf(key -> Objects.equals(key.index(), index)
+                && (key.cell() == null || !(geohash instanceof String cell) || suggests(key.cell(), cell)));
+        return indexed;
+    }
+
+    @Override
+    public boolean deleteDocument(String index, String id) throws IOException {
+        boolean deleted = delegate.deleteDocument(index, id);
+        invalidateIndex(index);
+        return deleted;
+    }
+
+    @Override
+    public boolean createIndex(String index) throws IOException {
+        return delegate.createIndex(index);
+    }
+
+    @Override
+    public boolean createIndex(String index, IndexLayout layout) throws IOException {
+        return delegate.createIndex(index, layout);
+    }
+
+    @Override
+    public boolean updateMapping(String index, String mappingJson) throws IOException {
+        boolean updated = delegate.updateMapping(index, mappingJson);
+        invalidateIndex(index);
+        return updated;
+    }
+
+    @Override
+    public String getDocument(String index, String id) throws IOException {
+        return delegate.getDocument(index, id);
+    }
+
+    @Override
+    public List<String> getAllIndices() throws IOException {
+        return delegate.getAllIndices();
+    }
+
+    @Override
+    public String getMapping(String index) throws IOException {
+        return delegate.getMapping(index);
+    }
+
+    @Override
+    public long exportDocuments(String index, OutputStream out) throws IOException {
+        return delegate.exportDocuments(index, out);
+    }
+
+    @Override
+    public Map<String, List<Map<String, Object>>> getPlatformListings(String index, Collection<String> productIds, String geohash) throws IOException {
+        // Used for live re-pricing, so never served from the cache
+        return delegate.getPlatformListings(index, productIds, geohash);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<Map<String, Object>>>> getPlatformListingsAsync(String index, Collection<String> productIds, String geohash) {
+        return delegate.getPlatformListingsAsync(index, productIds, geohash);
+    }
+
+    private static boolean affects(SearchKey key, String documentGeohash) {
+        return key.kind().equals("nearby")
+                ? ElasticsearchServiceImpl.isNearby(key.geohash(), documentGeohash)
+                : key.geohash().equals(documentGeohash);
+    }
+
+    /**
+     * Whether a document in {@code documentGeohash} can be suggested for a trie cell, whose
+     * suggestions also cover the neighbouring cells.
+     */
+    private static boolean suggests(String cell, String documentGeohash) {
+        String documentCell = documentGeohash.toLowerCase(Locale.ROOT);
+        return GeohashUtils.withNeighbors(cell).stream().anyMatch(documentCell::startsWith);
+    }
+
+    public void invalidateIndex(String index) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.index(), index));
+        stale.asMap().keySet().removeIf(key -> Objects.equals(key.index(), index));
+        suggestions.asMap().keySet().removeIf(key -> Objects.equals(key.index(), index));
+    }
+
+    /**
+     * Hit/miss/eviction counters of the search cache.
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("staleSize", stale.estimatedSize());
+        result.put("staleServed", staleServed.sum());
+        Map<String, Object> suggest = new LinkedHashMap<>();
+        suggest.put("cells", suggestions.estimatedSize());
+        suggest.put("hitCount", suggestHits.sum());
+        suggest.put("missCount", suggestMisses.sum());
+        result.put("suggest", suggest);
+        return result;
+    }
+}
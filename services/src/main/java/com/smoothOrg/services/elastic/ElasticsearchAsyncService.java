@@ -0,0 +1,47 @@
+package com.smoothOrg.services.elastic;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variants of the read operations of {@link ElasticsearchService}, built on
+ * {@code ElasticsearchAsyncClient}. No thread waits for Elasticsearch: the futures complete on
+ * the HTTP client's I/O threads, so callers should move heavy work off them (e.g. with
+ * {@code thenApplyAsync}). Failures complete the future exceptionally with the same
+ * exceptions the blocking methods throw. Queries and results are identical to the blocking
+ * methods of the same name.
+ */
+public interface ElasticsearchAsyncService {
+
+    /**
+     * @see ElasticsearchService#searchProducts(String, String, Integer)
+     */
+    CompletableFuture<List<ProductDoc>> searchProductsAsync(String index, String query, Integer size);
+
+    /**
+     * @see ElasticsearchService#searchProductsByGeohash(String, String, String, Integer)
+     */
+    CompletableFuture<List<ProductDoc>> searchProductsByGeohashAsync(String index, String query, String geohash, Integer size);
+
+    /**
+     * @see ElasticsearchService#searchProductsNearGeohash(String, String, String, Integer)
+     */
+    CompletableFuture<List<ProductDoc>> searchProductsNearGeohashAsync(String index, String query, String geohash, Integer size);
+
+    /**
+     * @see ElasticsearchService#suggestProducts(String, String, String, int)
+     */
+    CompletableFuture<List<String>> suggestProductsAsync(String index, String prefix, String geohash, int size);
+
+    /**
+     * @see ElasticsearchService#searchProductComparisons(String, String, String, Integer)
+     */
+    CompletableFuture<List<ProductComparison>> searchProductComparisonsAsync(String index, String query, String geohash, Integer size);
+
+    /**
+     * @see ElasticsearchService#getPlatformListings(String, Collection, String)
+     */
+    CompletableFuture<Map<String, List<Map<String, Object>>>> getPlatformListingsAsync(String index, Collection<String> productIds, String geohash);
+}
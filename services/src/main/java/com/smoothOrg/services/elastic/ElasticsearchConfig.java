@@ -1,5 +1,6 @@
 package com.smoothOrg.services.elastic;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -10,11 +11,28 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import java.util.Arrays;
+
+/**
+ * Builds the one Elasticsearch client selected by {@code elasticsearch.active}; the other
+ * profile's settings are never used.
+ * <p>
+ * {@code elasticsearch.<profile>.host} may list several nodes ({@code host[:port],...}). The
+ * REST client round-robins over them and takes failing nodes out of rotation. With
+ * {@code elasticsearch.sniff.enabled} the node list is also refreshed from the cluster
+ * periodically and right after a failure; leave it off for Elastic Cloud, whose nodes are
+ * only reachable through the proxy. Connections are pooled and kept alive between searches
+ * and bodies are gzipped, as set under {@code elasticsearch.http.*}.
+ */
 @Configuration
 public class ElasticsearchConfig {
 
@@ -28,47 +46,122 @@ public class ElasticsearchConfig {
 
     // ---- Cloud (basic auth) ----
     @Value("${elasticsearch.cloud.scheme:https}") private String cloudScheme;
-    @Value("${elasticsearch.cloud.host}") private String cloudHost;
+    @Value("${elasticsearch.cloud.host:}") private String cloudHost;
     @Value("${elasticsearch.cloud.port:443}") private int cloudPort;
     @Value("${elasticsearch.cloud.username:}") private String cloudUser;
     @Value("${elasticsearch.cloud.password:}") private String cloudPass;
 
+    // ---- Connection pool and timeouts ----
+    @Value("${elasticsearch.http.max-connections-per-route:50}") private int maxConnectionsPerRoute;
+    @Value("${elasticsearch.http.max-connections:200}") private int maxConnections;
+    @Value("${elasticsearch.http.keep-alive-ms:60000}") private long keepAliveMs;
+    @Value("${elasticsearch.http.connect-timeout-ms:1000}") private int connectTimeoutMs;
+    @Value("${elasticsearch.http.socket-timeout-ms:10000}") private int socketTimeoutMs;
+    @Value("${elasticsearch.http.pool-timeout-ms:1000}") private int poolTimeoutMs;
+    @Value("${elasticsearch.http.compression:true}") private boolean compression;
+
+    // ---- Node sniffing ----
+    @Value("${elasticsearch.sniff.enabled:false}") private boolean sniff;
+
+    private final SniffOnFailureListener sniffOnFailure = new SniffOnFailureListener();
+
     // ---------- Builders ----------
+    private boolean isCloud() {
+        return "cloud".equalsIgnoreCase(active);
+    }
+
+    /**
+     * Nodes of a comma separated {@code host[:port]} list, defaulting the port and scheme.
+     */
+    static HttpHost[] parseHosts(String hosts, int defaultPort, String scheme) {
+        HttpHost[] parsed = Arrays.stream(hosts.split(","))
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(host -> {
+                    int colon = host.lastIndexOf(':');
+                    return colon < 0
+                            ? new HttpHost(host, defaultPort, scheme)
+                            : new HttpHost(host.substring(0, colon), Integer.parseInt(host.substring(colon + 1)), scheme);
+                })
+                .toArray(HttpHost[]::new);
+        if (parsed.length == 0) {
+            throw new IllegalStateException("No Elasticsearch hosts configured in '" + hosts + "'");
+        }
+        return parsed;
+    }
+
+    private RestClientBuilder tuned(HttpHost[] hosts, BasicCredentialsProvider credentials) {
+        RestClientBuilder b = RestClient.builder(hosts)
+                .setCompressionEnabled(compression)
+                .setRequestConfigCallback(request -> request
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .setConnectionRequestTimeout(poolTimeoutMs))
+                .setHttpClientConfigCallback(http -> {
+                    http.setMaxConnPerRoute(maxConnectionsPerRoute)
+                            .setMaxConnTotal(maxConnections)
+                            // Reuse idle connections instead of reopening (and re-handshaking) per search
+                            .setKeepAliveStrategy((response, context) -> keepAliveMs);
+                    if (credentials != null) {
+                        http.setDefaultCredentialsProvider(credentials);
+                    }
+                    return http;
+                });
+        if (sniff) {
+            b.setFailureListener(sniffOnFailure);
+        }
+        return b;
+    }
+
     private RestClient buildNoAuth(String scheme, String host, int port) {
-        RestClientBuilder b = RestClient.builder(new HttpHost(host, port, scheme));
-        return b.build();
+        return tuned(parseHosts(host, port, scheme), null).build();
     }
 
     private RestClient buildBasicAuth(String scheme, String host, int port, String user, String pass) {
-        RestClientBuilder b = RestClient.builder(new HttpHost(host, port, scheme));
         BasicCredentialsProvider provider = new BasicCredentialsProvider();
         provider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, pass));
-        b.setHttpClientConfigCallback(http -> http.setDefaultCredentialsProvider(provider));
-        return b.build();
+        return tuned(parseHosts(host, port, scheme), provider).build();
     }
 
-    private ElasticsearchClient toEsClient(RestClient rc) {
-        ElasticsearchTransport transport = new RestClientTransport(rc, new JacksonJsonpMapper());
-        return new ElasticsearchClient(transport);
+    // ---------- Beans for the active profile only ----------
+    @Bean
+    public RestClient elasticsearchRestClient() {
+        return isCloud()
+                ? buildBasicAuth(cloudScheme, cloudHost, cloudPort, cloudUser, cloudPass)
+                : buildNoAuth(localScheme, localHost, localPort);
     }
 
-    // ---------- Named beans you can inject explicitly ----------
-    @Bean(name = "esClientLocal")
-    public ElasticsearchClient esClientLocal() {
-        return toEsClient(buildNoAuth(localScheme, localHost, localPort));
+    @Bean
+    @ConditionalOnProperty(name = "elasticsearch.sniff.enabled", havingValue = "true")
+    public Sniffer elasticsearchSniffer(RestClient restClient,
+                                        @Value("${elasticsearch.sniff.interval-ms:300000}") int intervalMs,
+                                        @Value("${elasticsearch.sniff.after-failure-delay-ms:30000}") int afterFailureDelayMs) {
+        ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(isCloud() ? cloudScheme : localScheme)
+                ? ElasticsearchNodesSniffer.Scheme.HTTPS
+                : ElasticsearchNodesSniffer.Scheme.HTTP;
+        Sniffer sniffer = Sniffer.builder(restClient)
+                .setSniffIntervalMillis(intervalMs)
+                .setSniffAfterFailureDelayMillis(afterFailureDelayMs)
+                .setNodesSniffer(new ElasticsearchNodesSniffer(restClient, socketTimeoutMs, scheme))
+                .build();
+        sniffOnFailure.setSniffer(sniffer);
+        return sniffer;
     }
 
-    @Bean(name = "esClientCloud")
-    public ElasticsearchClient esClientCloud() {
-        return toEsClient(buildBasicAuth(cloudScheme, cloudHost, cloudPort, cloudUser, cloudPass));
+    @Bean
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
+        return new RestClientTransport(restClient, new JacksonJsonpMapper());
+    }
+
+    @Bean
+    @Primary
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
+        return new ElasticsearchClient(transport);
     }
 
-    // ---------- Primary bean chosen by `elasticsearch.active` ----------
+    // ---------- Async client sharing the active client's transport ----------
     @Bean
-    @org.springframework.context.annotation.Primary
-    public ElasticsearchClient elasticsearchClient(
-            @Qualifier("esClientLocal") ElasticsearchClient local,
-            @Qualifier("esClientCloud") ElasticsearchClient cloud) {
-        return "cloud".equalsIgnoreCase(active) ? cloud : local;
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchClient client) {
+        return new ElasticsearchAsyncClient(client._transport(), client._transportOptions());
     }
 }
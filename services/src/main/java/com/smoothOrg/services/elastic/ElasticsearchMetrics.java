@@ -0,0 +1,131 @@
+package com.smoothOrg.services.elastic;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Meters for Elasticsearch calls.
+ * <ul>
+ *     <li>{@code elasticsearch.requests}: timer per operation, index and outcome, with a
+ *     percentile histogram</li>
+ *     <li>{@code elasticsearch.search.hits.returned}: documents returned to callers</li>
+ *     <li>{@code elasticsearch.search.hits.filtered}: documents in the requested page dropped
+ *     for scoring below the minimum relevance score</li>
+ *     <li>{@code elasticsearch.search.tier}: timer per operation and text query tier, with
+ *     {@code outcome=satisfied} when the tier found enough hits and {@code fallthrough} when the
+ *     next tier had to run; the satisfied share is the tier's hit rate</li>
+ *     <li>{@code elasticsearch.search.resilience}: per operation, hedges sent ({@code hedge}) and
+ *     won ({@code hedge_won}), retries, searches past their deadline and searches rejected by
+ *     the open circuit breaker</li>
+ *     <li>{@code elasticsearch.circuit.state}: 0 closed, 1 open, 2 half-open</li>
+ * </ul>
+ */
+@Component
+public class ElasticsearchMetrics {
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface AsyncCall<T> {
+        CompletableFuture<T> execute();
+    }
+
+    private final MeterRegistry registry;
+
+    public ElasticsearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Run and time one Elasticsearch operation; failures are tagged {@code outcome=error}.
+     */
+    public <T> T time(String operation, String index, Call<T> call) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            T result = call.execute();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(requestTimer(operation, index, outcome));
+        }
+    }
+
+    /**
+     * Time a non-blocking Elasticsearch operation until its future completes.
+     */
+    public <T> CompletableFuture<T> timeAsync(String operation, String index, AsyncCall<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        CompletableFuture<T> future;
+        try {
+            future = call.execute();
+        } catch (RuntimeException e) {
+            sample.stop(requestTimer(operation, index, "error"));
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, failure) ->
+                sample.stop(requestTimer(operation, index, failure == null ? "success" : "error")));
+    }
+
+    private Timer requestTimer(String operation, String index, String outcome) {
+        return Timer.builder("elasticsearch.requests")
+                .description("Elasticsearch calls made by the application")
+                .tag("operation", operation)
+                .tag("index", index != null ? index : "none")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void recordHits(String operation, String index, int returned, int filtered) {
+        counter("elasticsearch.search.hits.returned", operation, index).increment(returned);
+        if (filtered > 0) {
+            counter("elasticsearch.search.hits.filtered", operation, index).increment(filtered);
+        }
+    }
+
+    public void recordTier(String operation, String tier, boolean satisfied, long nanos) {
+        Timer.builder("elasticsearch.search.tier")
+                .description("Text search tiers tried, by whether they found enough hits")
+                .tag("operation", operation)
+                .tag("tier", tier)
+                .tag("outcome", satisfied ? "satisfied" : "fallthrough")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordResilience(String operation, String event) {
+        Counter.builder("elasticsearch.search.resilience")
+                .description("Hedges, retries, deadline misses and breaker rejections of searches")
+                .tag("operation", operation)
+                .tag("event", event)
+                .register(registry)
+                .increment();
+    }
+
+    public void registerCircuitState(IntSupplier state) {
+        Gauge.builder("elasticsearch.circuit.state", state, IntSupplier::getAsInt)
+                .description("Search circuit breaker: 0 closed, 1 open, 2 half-open")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    private Counter counter(String name, String operation, String index) {
+        return Counter.builder(name)
+                .tag("operation", operation)
+                .tag("index", index)
+                .register(registry);
+    }
+}
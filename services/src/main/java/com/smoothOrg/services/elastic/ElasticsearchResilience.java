@@ -0,0 +1,397 @@
+package com.smoothOrg.services.elastic;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.transport.TransportException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Deadline, hedging, retries and a circuit breaker around Elasticsearch searches. Only reads go
+ * through here, so every attempt is safe to repeat.
+ * <ul>
+ *     <li><b>Deadline</b>: each search must finish by its HTTP request's {@link RequestDeadline},
+ *     or within {@code app.search.resilience.deadline-ms} of starting outside a request. When it
+ *     passes, the search fails with {@link SearchDeadlineExceededException}.</li>
+ *     <li><b>Hedging</b>: when an attempt has not answered after the operation's recent p95
+ *     latency, a second identical request is sent. The REST client round-robins nodes, so it goes
+ *     to another node than a GC-paused one. The first answer wins.</li>
+ *     <li><b>Retries</b>: transport failures and 429/502/503/504 responses are retried after a
+ *     short backoff while the deadline allows.</li>
+ *     <li><b>Circuit breaker</b>: when too many recent searches failed that way, searches are
+ *     rejected with {@link ElasticsearchUnavailableException} for a while, then one probe is let
+ *     through. The cache serves stale results for rejected and failed searches.</li>
+ * </ul>
+ * Attempts still running when a search completes (the losing hedge, or all of them at the
+ * deadline) are cancelled, which aborts their HTTP requests.
+ */
+@Component
+public class ElasticsearchResilience {
+
+    // Latencies kept per operation for the hedging percentile, and the fewest needed to hedge at all
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int MIN_LATENCY_SAMPLES = 32;
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final ElasticsearchMetrics metrics;
+    private final long deadlineNanos;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final CircuitBreaker breaker;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor timers;
+
+    public ElasticsearchResilience(ElasticsearchMetrics metrics,
+                                   @Value("${app.search.resilience.deadline-ms:2000}") long deadlineMs,
+                                   @Value("${app.search.resilience.hedge.enabled:true}") boolean hedging,
+                                   @Value("${app.search.resilience.hedge.min-delay-ms:20}") long minHedgeDelayMs,
+                                   @Value("${app.search.resilience.retry.max-attempts:2}") int maxAttempts,
+                                   @Value("${app.search.resilience.retry.backoff-ms:50}") long backoffMs,
+                                   @Value("${app.search.resilience.breaker.failure-rate:0.5}") double failureRate,
+                                   @Value("${app.search.resilience.breaker.window:50}") int window,
+                                   @Value("${app.search.resilience.breaker.min-calls:20}") int minCalls,
+                                   @Value("${app.search.resilience.breaker.open-ms:10000}") long openMs) {
+        this.metrics = metrics;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        this.breaker = new CircuitBreaker(failureRate, window, minCalls, TimeUnit.MILLISECONDS.toNanos(openMs));
+        metrics.registerCircuitState(breaker::state);
+        // Hedge and retry timers; what they run only sends a request, so one thread is plenty
+        this.timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "es-resilience");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Deadline for a search starting now on this thread: the request's, capped at the configured
+     * budget.
+     */
+    public long deadline() {
+        long budget = System.nanoTime() + deadlineNanos;
+        Long requested = RequestDeadline.get();
+        return requested != null && requested - budget < 0 ? requested : budget;
+    }
+
+    /**
+     * Run a read with hedging and retries until {@code deadline}.
+     *
+     * @param attempt sends one request; called again for each hedge and retry
+     */
+    public <T> CompletableFuture<T> call(String operation, long deadline, Supplier<CompletableFuture<T>> attempt) {
+        if (!breaker.tryAcquire()) {
+            metrics.recordResilience(operation, "rejected");
+            return CompletableFuture.failedFuture(new ElasticsearchUnavailableException(operation));
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            breaker.release();
+            metrics.recordResilience(operation, "deadline_exceeded");
+            return CompletableFuture.failedFuture(new SearchDeadlineExceededException(operation));
+        }
+        Queue<CompletableFuture<T>> inFlight = new ConcurrentLinkedQueue<>();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(operation, deadline, attempt, 1, inFlight, result);
+        return result.orTimeout(remaining, TimeUnit.NANOSECONDS)
+                .handle((value, failure) -> {
+                    // Whatever is still running lost the race or ran out of time
+                    inFlight.forEach(future -> future.cancel(true));
+                    if (failure == null) {
+                        breaker.record(true);
+                        return value;
+                    }
+                    Throwable cause = unwrap(failure);
+                    if (cause instanceof TimeoutException) {
+                        metrics.recordResilience(operation, "deadline_exceeded");
+                        cause = new SearchDeadlineExceededException(operation);
+                    }
+                    if (isDegraded(cause)) {
+                        breaker.record(false);
+                    } else {
+                        breaker.release();
+                    }
+                    throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+                });
+    }
+
+    private <T> void attempt(String operation, long deadline, Supplier<CompletableFuture<T>> attempt, int number,
+                             Queue<CompletableFuture<T>> inFlight, CompletableFuture<T> result) {
+        hedged(operation, attempt, inFlight).whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(failure);
+            long retryAt = System.nanoTime() + backoffNanos;
+            if (result.isDone() || number >= maxAttempts || !isRetriable(cause) || retryAt - deadline >= 0) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            metrics.recordResilience(operation, "retry");
+            timers.schedule(() -> {
+                if (!result.isDone()) {
+                    attempt(operation, deadline, attempt, number + 1, inFlight, result);
+                }
+            }, backoffNanos, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    /**
+     * One attempt, plus a hedge once it has run longer than the operation's p95. Completes with
+     * the first success, or fails once every request sent has failed.
+     */
+    private <T> CompletableFuture<T> hedged(String operation, Supplier<CompletableFuture<T>> attempt,
+                                            Queue<CompletableFuture<T>> inFlight) {
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean hedged = new AtomicBoolean();
+        LatencyWindow window = latencies.computeIfAbsent(operation, key -> new LatencyWindow());
+        long start = System.nanoTime();
+
+        send(attempt, inFlight).whenComplete((value, failure) -> {
+            if (failure == null) {
+                window.record(System.nanoTime() - start);
+                first.complete(value);
+            } else if (hedged.compareAndSet(false, true) || pending.decrementAndGet() == 0) {
+                // No hedge was sent (and none will be now), or it already failed too
+                first.completeExceptionally(failure);
+            }
+        });
+
+        long delay = window.p95();
+        if (hedging && delay > 0 && !first.isDone() && breaker.isClosed()) {
+            ScheduledFuture<?> hedge = timers.schedule(() -> {
+                // Count the hedge before claiming it, so a first failure racing with this sees it
+                // pending and leaves completion to the hedge
+                pending.incrementAndGet();
+                if (!hedged.compareAndSet(false, true) || first.isDone()) {
+                    pending.decrementAndGet();
+                    return;
+                }
+                metrics.recordResilience(operation, "hedge");
+                send(attempt, inFlight).whenComplete((value, failure) -> {
+                    if (failure == null) {
+                        if (first.complete(value)) {
+                            metrics.recordResilience(operation, "hedge_won");
+                        }
+                    } else if (pending.decrementAndGet() == 0) {
+                        first.completeExceptionally(failure);
+                    }
+                });
+            }, Math.max(delay, minHedgeDelayNanos), TimeUnit.NANOSECONDS);
+            first.whenComplete((value, failure) -> hedge.cancel(false));
+        }
+        return first;
+    }
+
+    private static <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> attempt, Queue<CompletableFuture<T>> inFlight) {
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        inFlight.add(future);
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        while (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Failures another attempt (possibly on another node) may not hit: no response at all,
+     * overload, or a gateway error.
+     */
+    static boolean isRetriable(Throwable failure) {
+        if (failure instanceof ElasticsearchException e) {
+            return isTransientStatus(e.status());
+        }
+        if (failure instanceof TransportException e) {
+            return e.statusCode() < 0 || isTransientStatus(e.statusCode());
+        }
+        return failure instanceof IOException;
+    }
+
+    private static boolean isTransientStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Failures that say Elasticsearch, not the query, is at fault; these trip the breaker and
+     * may be answered from stale cache entries.
+     */
+    public static boolean isDegraded(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        return cause instanceof SearchDeadlineExceededException
+                || cause instanceof ElasticsearchUnavailableException
+                || isRetriable(cause);
+    }
+
+    /**
+     * Recent latencies of one operation in a ring buffer. The p95 is recomputed every
+     * {@value #MIN_LATENCY_SAMPLES} samples; before that many exist it is 0 and nothing is hedged.
+     */
+    private static final class LatencyWindow {
+        private final AtomicLongArray samples = new AtomicLongArray(LATENCY_SAMPLES);
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile long p95;
+
+        void record(long nanos) {
+            int n = count.getAndIncrement();
+            samples.set(Math.floorMod(n, LATENCY_SAMPLES), nanos);
+            if ((n + 1) % MIN_LATENCY_SAMPLES == 0) {
+                int filled = Math.min(n + 1, LATENCY_SAMPLES);
+                long[] sorted = new long[filled];
+                for (int i = 0; i < filled; i++) sorted[i] = samples.get(i);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(HEDGE_PERCENTILE * filled) - 1];
+            }
+        }
+
+        long p95() {
+            return p95;
+        }
+    }
+
+    /**
+     * Failure-rate breaker over the last {@code window} searches. Open for {@code openNanos} once
+     * at least {@code minCalls} were seen and the failure share reaches {@code failureRate}; then
+     * half-open, letting a single probe decide whether to close again.
+     */
+    static final class CircuitBreaker {
+        static final int CLOSED = 0;
+        static final int OPEN = 1;
+        static final int HALF_OPEN = 2;
+
+        private final double failureRate;
+        private final boolean[] outcomes;
+        private final int minCalls;
+        private final long openNanos;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile int state = CLOSED;
+        private int next;
+        private int calls;
+        private int failures;
+        private long openedAt;
+        private boolean probing;
+
+        CircuitBreaker(double failureRate, int window, int minCalls, long openNanos) {
+            this.failureRate = failureRate;
+            this.outcomes = new boolean[Math.max(1, window)];
+            this.minCalls = Math.min(minCalls, outcomes.length);
+            this.openNanos = openNanos;
+        }
+
+        int state() {
+            return state;
+        }
+
+        boolean isClosed() {
+            return state == CLOSED;
+        }
+
+        boolean tryAcquire() {
+            if (state == CLOSED) {
+                return true;
+            }
+            lock.lock();
+            try {
+                if (state == OPEN && System.nanoTime() - openedAt >= openNanos) {
+                    state = HALF_OPEN;
+                    probing = false;
+                }
+                if (state == HALF_OPEN && !probing) {
+                    probing = true;
+                    return true;
+                }
+                return state == CLOSED;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * The acquired call ended without saying anything about Elasticsearch's health.
+         */
+        void release() {
+            lock.lock();
+            try {
+                probing = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void record(boolean success) {
+            lock.lock();
+            try {
+                if (state == HALF_OPEN) {
+                    probing = false;
+                    if (success) {
+                        reset();
+                        state = CLOSED;
+                    } else {
+                        open();
+                    }
+                    return;
+                }
+                if (state == OPEN) {
+                    return;
+                }
+                if (calls == outcomes.length) {
+                    if (!outcomes[next]) failures--;
+                } else {
+                    calls++;
+                }
+                outcomes[next] = success;
+                if (!success) failures++;
+                next = (next + 1) % outcomes.length;
+                if (calls >= minCalls && failures >= failureRate * calls) {
+                    open();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void open() {
+            state = OPEN;
+            openedAt = System.nanoTime();
+            reset();
+        }
+
+        private void reset() {
+            next = 0;
+            calls = 0;
+            failures = 0;
+        }
+    }
+}
@@ -6,6 +6,11 @@ import java.util.Map;
 public interface ElasticsearchService {
     boolean createIndex(String index) throws IOException;
 
+    /**
+     * Create an index with the given shard count, replicas and routing settings.
+     */
+    boolean createIndex(String index, IndexLayout layout) throws IOException;
+
     boolean updateMapping(String index, String mappingJson) throws IOException;
 
     String getDocument(String index, String id) throws IOException;
@@ -25,9 +30,15 @@ public interface ElasticsearchService {
     String getMapping(String index) throws IOException;
 
     /**
-     * Retrieve all documents from the given index as JSON strings.
+     * Stream every document of the given index to {@code out} as NDJSON, one source per line.
+     * <p>
+     * Pages through a point-in-time snapshot with {@code search_after}, so memory stays constant
+     * regardless of index size and the export is consistent even while the index is written to.
+     * The stream is flushed after each page and left open.
+     *
+     * @return the number of documents written
      */
-    java.util.List<String> getAllDocuments(String index) throws IOException;
+    long exportDocuments(String index, java.io.OutputStream out) throws IOException;
 
     /**
      * Perform a text based product search across commonly used product fields.
@@ -35,9 +46,9 @@ public interface ElasticsearchService {
      * @param index the index to search
      * @param query the free-text query provided by the user
      * @param size  optional number of documents to return (defaults applied by caller)
-     * @return the matching documents as maps containing their original fields
+     * @return the matching listings with their scores
      */
-    java.util.List<java.util.Map<String, Object>> searchProducts(String index, String query, Integer size) throws IOException;
+    java.util.List<ProductDoc> searchProducts(String index, String query, Integer size) throws IOException;
 
     /**
      * Perform a text search for products limited to a specific geohash bucket.
@@ -46,7 +57,57 @@ public interface ElasticsearchService {
      * @param query   the free-text query provided by the user
      * @param geohash the geohash code that should be matched
      * @param size    optional number of documents to return (defaults applied by caller)
-     * @return the matching documents as maps containing their original fields
+     * @return the matching listings with their scores
+     */
+    java.util.List<ProductDoc> searchProductsByGeohash(String index, String query, String geohash, Integer size) throws IOException;
+
+    /**
+     * Text search around a geohash cell that also covers users near a cell boundary.
+     * <p>
+     * Matches documents in the cell and its 8 neighbours, falling back to the enclosing coarser
+     * cells, all in one request. Results are ordered by proximity first (cell, neighbours, then
+     * each coarser prefix) and by relevance within each ring; every result carries a
+     * {@code _geohash_match} of {@code cell}, {@code neighbor} or {@code prefix:<length>}.
+     *
+     * @param index   the index to search
+     * @param query   the free-text query provided by the user
+     * @param geohash the user's geohash cell
+     * @param size    optional number of documents to return
+     * @return the matching documents, nearest first
+     */
+    java.util.List<ProductDoc> searchProductsNearGeohash(String index, String query, String geohash, Integer size) throws IOException;
+
+    /**
+     * Product name completions for a search-as-you-type box, from the {@code product_name.suggest}
+     * completion field. When a geohash is given, only listings in that cell and its neighbours
+     * (at the geohash's precision) are suggested.
+     *
+     * @param index   the index to search
+     * @param prefix  what the user has typed so far
+     * @param geohash optional cell the suggestions should come from
+     * @param size    maximum number of suggestions
+     * @return distinct product names, best first
+     */
+    java.util.List<String> suggestProducts(String index, String prefix, String geohash, int size) throws IOException;
+
+    /**
+     * Text search that collapses the per-platform documents of a product into one row.
+     *
+     * @param index   the index to search
+     * @param query   the free-text query provided by the user
+     * @param geohash optional geohash the listings must belong to
+     * @param size    optional number of products to return
+     * @return one row per product with its platform prices
+     */
+    java.util.List<ProductComparison> searchProductComparisons(String index, String query, String geohash, Integer size) throws IOException;
+
+    /**
+     * Fetch the live per-platform documents for many products in a single round trip.
+     *
+     * @param index      the index to search
+     * @param productIds the product ids to look up
+     * @param geohash    optional geohash the listings must belong to
+     * @return platform documents grouped by {@code product_id}; products without listings are absent
      */
-    java.util.List<java.util.Map<String, Object>> searchProductsByGeohash(String index, String query, String geohash, Integer size) throws IOException;
+    Map<String, java.util.List<Map<String, Object>>> getPlatformListings(String index, java.util.Collection<String> productIds, String geohash) throws IOException;
 }
@@ -1,6 +1,9 @@
 package com.smoothOrg.services.elastic;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.GeoHashPrecision;
 import co.elastic.clients.elasticsearch._types.Result;
 import co.elastic.clients.elasticsearch.cat.indices.IndicesRecord;
 import co.elastic.clients.elasticsearch.core.GetRequest;
@@ -8,7 +11,11 @@ import co.elastic.clients.elasticsearch.core.GetResponse;
 import co.elastic.clients.elasticsearch.core.IndexRequest;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.InnerHitsResult;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
 import co.elastic.clients.elasticsearch.core.DeleteRequest;
 import co.elastic.clients.elasticsearch.core.DeleteResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
@@ -22,26 +29,111 @@ import co.elastic.clients.elasticsearch.cat.IndicesResponse;
 import co.elastic.clients.elasticsearch.indices.PutMappingRequest;
 import co.elastic.clients.elasticsearch.indices.PutMappingResponse;
 import co.elastic.clients.json.JsonData;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smoothOrg.services.util.GeohashUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 @Service
-public class ElasticsearchServiceImpl implements ElasticsearchService {
+public class ElasticsearchServiceImpl implements ElasticsearchService, ElasticsearchAsyncService {
+
+    // Filter out weak matches (score < 10)
+    private static final double MIN_SCORE = 10.0;
+
+    // Page size Elasticsearch uses when a search does not ask for one
+    private static final int DEFAULT_SEARCH_SIZE = 10;
+
+    // Fields of the text query tiers: exact fields only, plus the ngram subfields for the later tiers
+    private static final List<String> PHRASE_PREFIX_FIELDS = List.of("product_name^4", "brand_name^2");
+    private static final List<String> EXACT_FIELDS = List.of(
+            "product_name^4", "brand_name^2", "categories^2", "sub_categories",
+            "breadcrumbs", "description", "ingredients");
+    private static final List<String> TEXT_FIELDS = List.of(
+            "product_name^4",
+            "product_name.ngram^2",
+            "brand_name^2",
+            "brand_name.ngram",
+            "categories^2",
+            "categories.ngram",
+            "sub_categories",
+            "breadcrumbs",
+            "breadcrumbs.ngram",
+            "description",
+            "ingredients",
+            "ingredients.ngram");
+
+    // Coarser prefixes searched after the cell and its neighbours (7 chars -> 6 and 5)
+    private static final int GEOHASH_FALLBACK_LEVELS = 2;
+
+    // Score added per matched proximity clause; far above any text score so rings sort first
+    private static final float PROXIMITY_WEIGHT = 1000f;
+
+    // Upper bound on platform documents per product in a listings lookup
+    private static final int LISTINGS_PER_PRODUCT = 10;
+
+    // Products per listings search, so its size stays within index.max_result_window (10,000)
+    private static final int LISTINGS_PRODUCTS_PER_SEARCH = 10_000 / LISTINGS_PER_PRODUCT;
+
+    // Fields returned for the collapsed product row and for each platform listing
+    private static final List<String> COMPARISON_FIELDS = List.of(
+            "product_id", "product_name", "brand_name", "image_url", "quantity");
+    private static final List<String> PLATFORM_PRICE_FIELDS = List.of(
+            "platform", "selling_price", "mrp", "availability", "inventory", "product_url");
+
+    // Name of the completion suggester and the finest geohash precision its geo context indexes
+    private static final String SUGGESTER = "product_name";
+    private static final int SUGGEST_CONTEXT_PRECISION = 6;
+
+    // Documents fetched per export page and how long the point-in-time survives between pages
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final String EXPORT_KEEP_ALIVE = "2m";
+
+    // Writes export lines without closing the caller's stream
+    private static final ObjectMapper EXPORT_MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
     private final ElasticsearchClient client;
+    private final ElasticsearchAsyncClient asyncClient;
+    private final ElasticsearchMetrics metrics;
+    private final ElasticsearchResilience resilience;
+    private final GeoRouting geoRouting;
+    private final int tierMinHits;
 
     @Autowired
-    public ElasticsearchServiceImpl(ElasticsearchClient client) {
+    public ElasticsearchServiceImpl(ElasticsearchClient client,
+                                    ElasticsearchAsyncClient asyncClient,
+                                    ElasticsearchMetrics metrics,
+                                    ElasticsearchResilience resilience,
+                                    GeoRouting geoRouting,
+                                    @Value("${app.search.tier-min-hits:5}") int tierMinHits) {
         this.client = client;
+        this.asyncClient = asyncClient;
+        this.metrics = metrics;
+        this.resilience = resilience;
+        this.geoRouting = geoRouting;
+        this.tierMinHits = tierMinHits;
     }
 
     @Override
@@ -49,7 +141,25 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
         CreateIndexRequest request = new CreateIndexRequest.Builder()
                 .index(index)
                 .build();
-        CreateIndexResponse response = client.indices().create(request);
+        CreateIndexResponse response = metrics.time("create_index", index, () -> client.indices().create(request));
+        return response.acknowledged();
+    }
+
+    @Override
+    public boolean createIndex(String index, IndexLayout layout) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest.Builder()
+                .index(index)
+                .settings(s -> {
+                    s.numberOfShards(String.valueOf(layout.shards()))
+                            .numberOfReplicas(String.valueOf(layout.replicas()));
+                    if (layout.routingPartitionSize() > 1) {
+                        s.routingPartitionSize(layout.routingPartitionSize());
+                    }
+                    return s;
+                })
+                .mappings(m -> m.routing(r -> r.required(layout.routingRequired())))
+                .build();
+        CreateIndexResponse response = metrics.time("create_index", index, () -> client.indices().create(request));
         return response.acknowledged();
     }
 
@@ -59,17 +169,21 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
                 .index(index)
                 .withJson(new StringReader(mappingJson))
                 .build();
-        PutMappingResponse response = client.indices().putMapping(request);
+        PutMappingResponse response = metrics.time("put_mapping", index, () -> client.indices().putMapping(request));
         return response.acknowledged();
     }
 
     @Override
     public String getDocument(String index, String id) throws IOException {
+        if (geoRouting.isEnabled()) {
+            Hit<JsonData> hit = findById(index, id);
+            return hit != null && hit.source() != null ? hit.source().toString() : null;
+        }
         GetRequest request = new GetRequest.Builder()
                 .index(index)
                 .id(id)
                 .build();
-        GetResponse<JsonData> response = client.get(request, JsonData.class);
+        GetResponse<JsonData> response = metrics.time("get", index, () -> client.get(request, JsonData.class));
         if (response.found()) {
             // Convert the JsonData payload to its JSON representation.
             return response.source().toString();
@@ -79,30 +193,56 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
 
     @Override
     public boolean indexDocument(String index, String id, Map<String, Object> document) throws IOException {
+        Map<String, Object> stamped = new LinkedHashMap<>(document);
+        stamped.put(ReindexService.INGESTED_AT, Instant.now().toString());
         IndexRequest<Map<String, Object>> request = new IndexRequest.Builder<Map<String, Object>>()
                 .index(index)
                 .id(id)
-                .document(document)
+                .routing(geoRouting.of(document))
+                .document(stamped)
                 .build();
-        IndexResponse response = client.index(request);
+        IndexResponse response = metrics.time("index", index, () -> client.index(request));
         Result result = response.result();
         return result == Result.Created || result == Result.Updated;
     }
 
     @Override
     public boolean deleteDocument(String index, String id) throws IOException {
+        String routing = null;
+        if (geoRouting.isEnabled()) {
+            Hit<JsonData> hit = findById(index, id);
+            if (hit == null) {
+                return false;
+            }
+            routing = hit.routing();
+        }
         DeleteRequest request = new DeleteRequest.Builder()
                 .index(index)
                 .id(id)
+                .routing(routing)
                 .build();
-        DeleteResponse response = client.delete(request);
+        DeleteResponse response = metrics.time("delete", index, () -> client.delete(request));
         return response.result() == Result.Deleted;
     }
 
+    /**
+     * A document looked up by id on every shard, since its routing is not known from the id.
+     */
+    private Hit<JsonData> findById(String index, String id) throws IOException {
+        SearchRequest request = new SearchRequest.Builder()
+                .index(index)
+                .query(q -> q.ids(i -> i.values(id)))
+                .size(1)
+                .build();
+        SearchResponse<JsonData> response = metrics.time("get_by_id", index, () -> client.search(request, JsonData.class));
+        List<Hit<JsonData>> hits = response.hits().hits();
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
     @Override
     public List<String> getAllIndices() throws IOException {
         IndicesRequest request = new IndicesRequest.Builder().build();
-        IndicesResponse response = client.cat().indices(request);
+        IndicesResponse response = metrics.time("cat_indices", null, () -> client.cat().indices(request));
         List<String> indices = new ArrayList<>();
         for (IndicesRecord record : response.valueBody()) {
             indices.add(record.index());
@@ -115,7 +255,7 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
         GetMappingRequest request = new GetMappingRequest.Builder()
                 .index(index)
                 .build();
-        GetMappingResponse response = client.indices().getMapping(request);
+        GetMappingResponse response = metrics.time("get_mapping", index, () -> client.indices().getMapping(request));
         IndexMappingRecord record = response.result().get(index);
         if (record != null && record.mappings() != null) {
             return record.mappings().toString();
@@ -124,88 +264,513 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
     }
 
     @Override
-    public List<String> getAllDocuments(String index) throws IOException {
+    public long exportDocuments(String index, OutputStream out) throws IOException {
+        String pitId = metrics.time("open_pit", index, () -> client.openPointInTime(o -> o
+                .index(index)
+                .keepAlive(k -> k.time(EXPORT_KEEP_ALIVE)))).id();
+        long exported = 0;
+        JsonGenerator generator = EXPORT_MAPPER.getFactory().createGenerator(out);
+        // Lines are separated explicitly; no separator between root values
+        generator.setRootValueSeparator(null);
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                String currentPit = pitId;
+                SearchRequest.Builder builder = new SearchRequest.Builder()
+                        .pit(p -> p.id(currentPit).keepAlive(k -> k.time(EXPORT_KEEP_ALIVE)))
+                        .query(q -> q.matchAll(m -> m))
+                        .sort(so -> so.field(f -> f.field("_shard_doc")))
+                        .size(EXPORT_PAGE_SIZE)
+                        .trackTotalHits(t -> t.enabled(false));
+                if (searchAfter != null) {
+                    builder.searchAfter(searchAfter);
+                }
+                SearchRequest request = builder.build();
+                // Sources are parsed straight into trees and written back out; no Map or String copies
+                SearchResponse<JsonNode> response = metrics.time("export_page", index, () -> client.search(request, JsonNode.class));
+                if (response.pitId() != null) {
+                    // The point-in-time id may change between pages; always use the latest
+                    pitId = response.pitId();
+                }
+                List<Hit<JsonNode>> hits = response.hits().hits();
+                for (Hit<JsonNode> hit : hits) {
+                    if (hit.source() != null) {
+                        generator.writeTree(hit.source());
+                        generator.writeRaw('\n');
+                        exported++;
+                    }
+                }
+                // Hand each page to the client before fetching the next
+                generator.flush();
+                if (hits.size() < EXPORT_PAGE_SIZE) {
+                    return exported;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+        } finally {
+            generator.close();
+            String lastPit = pitId;
+            metrics.time("close_pit", index, () -> client.closePointInTime(c -> c.id(lastPit)));
+        }
+    }
+
+    @Override
+    public List<ProductDoc> searchProducts(String index, String query, Integer size) throws IOException {
+        return await(searchProducts(searcher(), index, query, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsAsync(String index, String query, Integer size) {
+        return searchProducts(searcher(), index, query, size);
+    }
+
+    private CompletableFuture<List<ProductDoc>> searchProducts(Searcher searcher, String index, String query, Integer size) {
+        return executeTieredSearch(searcher, "search", index, null, query, Function.identity(), size);
+    }
+
+    @Override
+    public List<ProductDoc> searchProductsByGeohash(String index, String query, String geohash, Integer size) throws IOException {
+        return await(searchProductsByGeohash(searcher(), index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsByGeohashAsync(String index, String query, String geohash, Integer size) {
+        return searchProductsByGeohash(searcher(), index, query, geohash, size);
+    }
+
+    private CompletableFuture<List<ProductDoc>> searchProductsByGeohash(Searcher searcher, String index, String query, String geohash, Integer size) {
+        Query geohashFilter = Query.of(q -> q.term(t -> t.field("geohash").value(v -> v.stringValue(geohash))));
+
+        return executeTieredSearch(searcher, "search_geohash", index, geoRouting.of(geohash), query, textQuery -> Query.of(q -> q.bool(b -> b
+                .must(textQuery)
+                .filter(geohashFilter))), size);
+    }
+
+    @Override
+    public List<ProductDoc> searchProductsNearGeohash(String index, String query, String geohash, Integer size) throws IOException {
+        return await(searchProductsNearGeohash(searcher(), index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductDoc>> searchProductsNearGeohashAsync(String index, String query, String geohash, Integer size) {
+        return searchProductsNearGeohash(searcher(), index, query, geohash, size);
+    }
+
+    private CompletableFuture<List<ProductDoc>> searchProductsNearGeohash(Searcher searcher, String index, String query, String geohash, Integer size) {
+        String center = geohash.toLowerCase(Locale.ROOT);
+        List<String> ring = GeohashUtils.withNeighbors(center);
+        List<FieldValue> ringValues = ring.stream().map(FieldValue::of).toList();
+        int levels = Math.min(GEOHASH_FALLBACK_LEVELS, center.length() - 1);
+        // Every matchable cell lies in the ring or under the coarsest fallback prefix
+        List<String> reach = new ArrayList<>(ring);
+        reach.add(center.substring(0, center.length() - levels));
+        String routing = geoRouting.covering(reach);
+
+        // The relevance cut is applied to the text score alone, before proximity boosts are added
+        Query textQuery = buildTextQuery(query);
+        Query relevant = Query.of(q -> q.functionScore(fs -> fs.query(textQuery).minScore(MIN_SCORE)));
+
+        // Nested rings: a document scores one weight per clause it matches, so
+        // cell > neighbour > prefix(n-1) > prefix(n-2) regardless of text score
+        float ringBoost = (levels + 1) * PROXIMITY_WEIGHT;
+        Query nearby = Query.of(q -> q.bool(b -> {
+            b.must(relevant);
+            b.should(sh -> sh.constantScore(c -> c.filter(f -> f.terms(t -> t.field("geohash").terms(v -> v.value(ringValues)))).boost(ringBoost)));
+            b.should(sh -> sh.constantScore(c -> c.filter(f -> f.term(t -> t.field("geohash").value(center))).boost(ringBoost)));
+            for (int level = 1; level <= levels; level++) {
+                String prefix = center.substring(0, center.length() - level);
+                b.should(sh -> sh.constantScore(c -> c.filter(f -> f.prefix(p -> p.field("geohash").value(prefix))).boost(PROXIMITY_WEIGHT)));
+            }
+            b.minimumShouldMatch("1");
+            return b;
+        }));
+
+        return executeSearch(searcher, "search_nearby", index, routing, nearby, size, null).thenApply(results -> {
+            for (int i = 0; i < results.size(); i++) {
+                ProductDoc result = results.get(i);
+                String cell = result.geohash() != null ? result.geohash().toLowerCase(Locale.ROOT) : "";
+                double boost = 0;
+                String match;
+                if (ring.contains(cell)) {
+                    boost += ringBoost;
+                    match = "neighbor";
+                    if (cell.equals(center)) {
+                        boost += ringBoost;
+                        match = "cell";
+                    }
+                } else {
+                    match = "prefix:" + commonPrefixLength(center, cell);
+                }
+                for (int level = 1; level <= levels; level++) {
+                    if (cell.startsWith(center.substring(0, center.length() - level))) boost += PROXIMITY_WEIGHT;
+                }
+                Double score = result.score() != null ? result.score() - boost : null;
+                results.set(i, result.withMatch(score, match));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Whether a document in {@code documentGeohash} can appear in
+     * {@link #searchProductsNearGeohash} results for {@code center}.
+     */
+    static boolean isNearby(String center, String documentGeohash) {
+        String cell = documentGeohash.toLowerCase(Locale.ROOT);
+        String origin = center.toLowerCase(Locale.ROOT);
+        int levels = Math.min(GEOHASH_FALLBACK_LEVELS, origin.length() - 1);
+        return cell.startsWith(origin.substring(0, origin.length() - levels))
+                || GeohashUtils.withNeighbors(origin).contains(cell);
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = 0;
+        while (length < a.length() && length < b.length() && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    public List<String> suggestProducts(String index, String prefix, String geohash, int size) throws IOException {
+        return await(suggestProducts(searcher(), index, prefix, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> suggestProductsAsync(String index, String prefix, String geohash, int size) {
+        return suggestProducts(searcher(), index, prefix, geohash, size);
+    }
+
+    private CompletableFuture<List<String>> suggestProducts(Searcher searcher, String index, String prefix, String geohash, int size) {
+        String cell = StringUtils.hasText(geohash) ? geohash.toLowerCase(Locale.ROOT) : null;
+        if (cell != null && cell.length() > SUGGEST_CONTEXT_PRECISION) {
+            cell = cell.substring(0, SUGGEST_CONTEXT_PRECISION);
+        }
+        String context = cell;
         SearchRequest request = new SearchRequest.Builder()
                 .index(index)
-                .query(q -> q.matchAll(m -> m))
+                .routing(context != null ? geoRouting.covering(GeohashUtils.withNeighbors(context)) : null)
+                .source(src -> src.fetch(false))
+                .suggest(sg -> sg.suggesters(SUGGESTER, fs -> fs
+                        .prefix(prefix)
+                        .completion(c -> {
+                            c.field("product_name.suggest").size(size).skipDuplicates(true);
+                            if (context != null) {
+                                GeoHashPrecision precision = GeoHashPrecision.of(p -> p.geohashLength(context.length()));
+                                c.contexts("location", List.of(CompletionContext.of(cc -> cc
+                                        .context(ctx -> ctx.location(l -> l.geohash(g -> g.geohash(context))))
+                                        .precision(precision)
+                                        .neighbours(precision))));
+                            }
+                            return c;
+                        })))
                 .build();
 
-        SearchResponse<JsonData> response = client.search(request, JsonData.class);
-        List<String> results = new ArrayList<>();
-        ObjectMapper mapper = new ObjectMapper();  // Jackson object mapper
+        return searcher.search("suggest", index, request, Void.class).thenApply(response -> {
+            List<String> suggestions = new ArrayList<>(size);
+            for (Suggestion<Void> suggestion : response.suggest().getOrDefault(SUGGESTER, List.of())) {
+                if (suggestion.isCompletion()) {
+                    for (CompletionSuggestOption<Void> option : suggestion.completion().options()) {
+                        suggestions.add(option.text());
+                    }
+                }
+            }
+            return suggestions;
+        });
+    }
+
+    @Override
+    public List<ProductComparison> searchProductComparisons(String index, String query, String geohash, Integer size) throws IOException {
+        return await(searchProductComparisons(searcher(), index, query, geohash, size));
+    }
+
+    @Override
+    public CompletableFuture<List<ProductComparison>> searchProductComparisonsAsync(String index, String query, String geohash, Integer size) {
+        return searchProductComparisons(searcher(), index, query, geohash, size);
+    }
+
+    private CompletableFuture<List<ProductComparison>> searchProductComparisons(Searcher searcher, String index, String query, String geohash, Integer size) {
+        Query textQuery = buildTextQuery(query);
+        Query combined = StringUtils.hasText(geohash)
+                ? Query.of(q -> q.bool(b -> b
+                        .must(textQuery)
+                        .filter(f -> f.term(t -> t.field("geohash").value(v -> v.stringValue(geohash))))))
+                : textQuery;
+
+        // Collapse on product_id: the best-scoring document describes the product and
+        // the inner hits carry only the price fields of every platform listing
+        SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
+                .index(index)
+                .routing(StringUtils.hasText(geohash) ? geoRouting.of(geohash) : null)
+                .query(combined)
+                .minScore(MIN_SCORE)
+                .source(src -> src.filter(f -> f.includes(COMPARISON_FIELDS)))
+                .collapse(c -> c
+                        .field("product_id")
+                        .innerHits(ih -> ih
+                                .name("platforms")
+                                .size(LISTINGS_PER_PRODUCT)
+                                .source(src -> src.filter(f -> f.includes(PLATFORM_PRICE_FIELDS)))));
 
-        for (Hit<JsonData> hit : response.hits().hits()) {
-            // Convert JsonData to Map
-            Map<String, Object> map = hit.source().to(Map.class);
-            // Convert map to JSON string
-            String json = mapper.writeValueAsString(map);
-            results.add(json);
+        if (size != null && size > 0) {
+            requestBuilder.size(size);
         }
 
-        return results;
+        SearchRequest request = requestBuilder.build();
+        return searcher.search("search_grouped", index, request, ProductComparison.class).thenApply(response -> {
+            List<ProductComparison> results = new ArrayList<>();
+            for (Hit<ProductComparison> hit : response.hits().hits()) {
+                ProductComparison product = hit.source();
+                if (product == null) continue;
+                List<ProductComparison.PlatformPrice> listings = new ArrayList<>();
+                InnerHitsResult platforms = hit.innerHits().get("platforms");
+                if (platforms != null) {
+                    for (Hit<JsonData> listing : platforms.hits().hits()) {
+                        if (listing.source() != null) {
+                            listings.add(listing.source().to(ProductComparison.PlatformPrice.class));
+                        }
+                    }
+                }
+                results.add(product.withListings(hit.score(), listings));
+            }
+            metrics.recordHits("search_grouped", index, results.size(), 0);
+            return results;
+        });
     }
 
     @Override
-    public List<Map<String, Object>> searchProducts(String index, String query, Integer size) throws IOException {
-        Query textQuery = buildTextQuery(query);
-        return executeSearch(index, textQuery, size);
+    public Map<String, List<Map<String, Object>>> getPlatformListings(String index, Collection<String> productIds, String geohash) throws IOException {
+        return await(getPlatformListings(searcher(), index, productIds, geohash));
     }
 
     @Override
-    public List<Map<String, Object>> searchProductsByGeohash(String index, String query, String geohash, Integer size) throws IOException {
-        Query textQuery = buildTextQuery(query);
-        Query geohashFilter = Query.of(q -> q.term(t -> t.field("geohash").value(v -> v.stringValue(geohash))));
+    public CompletableFuture<Map<String, List<Map<String, Object>>>> getPlatformListingsAsync(String index, Collection<String> productIds, String geohash) {
+        return getPlatformListings(searcher(), index, productIds, geohash);
+    }
 
-        Query combined = Query.of(q -> q.bool(b -> b
-                .must(textQuery)
-                .filter(geohashFilter)));
+    private CompletableFuture<Map<String, List<Map<String, Object>>>> getPlatformListings(Searcher searcher, String index, Collection<String> productIds, String geohash) {
+        List<FieldValue> ids = productIds.stream().distinct().map(FieldValue::of).toList();
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        if (ids.size() <= LISTINGS_PRODUCTS_PER_SEARCH) {
+            return getPlatformListingsChunk(searcher, index, ids, geohash);
+        }
+
+        // Larger carts are split into concurrent searches; each product lands in exactly one
+        List<CompletableFuture<Map<String, List<Map<String, Object>>>>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += LISTINGS_PRODUCTS_PER_SEARCH) {
+            List<FieldValue> chunk = ids.subList(from, Math.min(ids.size(), from + LISTINGS_PRODUCTS_PER_SEARCH));
+            chunks.add(getPlatformListingsChunk(searcher, index, chunk, geohash));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<String, List<Map<String, Object>>> grouped = new HashMap<>();
+            chunks.forEach(chunk -> grouped.putAll(chunk.join()));
+            return grouped;
+        });
+    }
+
+    private CompletableFuture<Map<String, List<Map<String, Object>>>> getPlatformListingsChunk(Searcher searcher, String index, List<FieldValue> ids, String geohash) {
+        // One filter-only search (no scoring) instead of a get per product per platform
+        Query listings = Query.of(q -> q.bool(b -> {
+            b.filter(f -> f.terms(t -> t.field("product_id").terms(v -> v.value(ids))));
+            if (StringUtils.hasText(geohash)) {
+                b.filter(f -> f.term(t -> t.field("geohash").value(v -> v.stringValue(geohash))));
+            }
+            return b;
+        }));
+
+        SearchRequest request = new SearchRequest.Builder()
+                .index(index)
+                .routing(StringUtils.hasText(geohash) ? geoRouting.of(geohash) : null)
+                .query(listings)
+                .size(ids.size() * LISTINGS_PER_PRODUCT)
+                .build();
 
-        return executeSearch(index, combined, size);
+        return searcher.search("listings", index, request, JsonData.class).thenApply(response -> {
+            Map<String, List<Map<String, Object>>> grouped = new HashMap<>();
+            for (Hit<JsonData> hit : response.hits().hits()) {
+                JsonData source = hit.source();
+                if (source == null) continue;
+                Map<String, Object> document = source.to(Map.class);
+                Object productId = document.get("product_id");
+                if (productId instanceof String id) {
+                    grouped.computeIfAbsent(id, k -> new ArrayList<>()).add(document);
+                }
+            }
+            return grouped;
+        });
     }
 
+    /**
+     * Shapes of the free-text query, cheapest first. {@link #executeTieredSearch} tries them in
+     * order and stops at the first that finds enough relevant hits, so fuzzy matching over the
+     * ngram fields only runs for queries the cheaper shapes cannot answer.
+     */
+    enum TextTier {
+        /** Exact terms (all of them) or a phrase prefix of the name or brand; no ngrams, no fuzziness */
+        EXACT,
+        /** Any term over every field including the ngram subfields; catches partial words */
+        NGRAM,
+        /** The ngram query with fuzziness AUTO; catches typos */
+        FUZZY;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final TextTier[] TEXT_TIERS = TextTier.values();
+
     private Query buildTextQuery(String query) {
-        return Query.of(q -> q.multiMatch(mm -> mm
-                .query(query)
-                .fields(List.of(
-                        "product_name^4",
-                        "product_name.ngram^2",
-                        "brand_name^2",
-                        "brand_name.ngram",
-                        "categories^2",
-                        "categories.ngram",
-                        "sub_categories",
-                        "breadcrumbs",
-                        "breadcrumbs.ngram",
-                        "description",
-                        "ingredients",
-                        "ingredients.ngram"))
-                .fuzziness("AUTO")));
-    }
-
-    private List<Map<String, Object>> executeSearch(String index, Query query, Integer size) throws IOException {
+        return buildTextQuery(query, TextTier.FUZZY);
+    }
+
+    private Query buildTextQuery(String query, TextTier tier) {
+        return switch (tier) {
+            case EXACT -> Query.of(q -> q.bool(b -> b
+                    .should(s -> s.multiMatch(mm -> mm
+                            .query(query)
+                            .type(TextQueryType.PhrasePrefix)
+                            .fields(PHRASE_PREFIX_FIELDS)))
+                    .should(s -> s.multiMatch(mm -> mm
+                            .query(query)
+                            .operator(Operator.And)
+                            .fields(EXACT_FIELDS)))
+                    .minimumShouldMatch("1")));
+            case NGRAM -> Query.of(q -> q.multiMatch(mm -> mm
+                    .query(query)
+                    .fields(TEXT_FIELDS)));
+            case FUZZY -> Query.of(q -> q.multiMatch(mm -> mm
+                    .query(query)
+                    .fields(TEXT_FIELDS)
+                    .fuzziness("AUTO")));
+        };
+    }
+
+    /**
+     * Text search that runs the {@link TextTier}s in order until one returns at least
+     * {@code app.search.tier-min-hits} hits above the minimum score (or the requested size, if
+     * smaller). Returns the tier with the most hits, the earlier one on a tie.
+     *
+     * @param scope wraps the text query, e.g. with a geohash filter
+     */
+    private CompletableFuture<List<ProductDoc>> executeTieredSearch(Searcher searcher, String operation, String index, String routing,
+                                                                    String text, Function<Query, Query> scope, Integer size) {
+        if (tierMinHits <= 0) {
+            return executeSearch(searcher, operation, index, routing, scope.apply(buildTextQuery(text)), size, MIN_SCORE);
+        }
+        int wanted = Math.min(tierMinHits, size != null && size > 0 ? size : DEFAULT_SEARCH_SIZE);
+        return runTier(searcher, operation, index, routing, text, scope, size, wanted, 0, null).thenApply(best -> {
+            metrics.recordHits(operation, index, best.results().size(), best.filtered());
+            return best.results();
+        });
+    }
+
+    private CompletableFuture<SearchPage> runTier(Searcher searcher, String operation, String index, String routing, String text,
+                                                  Function<Query, Query> scope, Integer size, int wanted,
+                                                  int tier, SearchPage best) {
+        TextTier current = TEXT_TIERS[tier];
+        long start = System.nanoTime();
+        return fetchPage(searcher, operation, index, routing, scope.apply(buildTextQuery(text, current)), size, MIN_SCORE)
+                .thenCompose(page -> {
+                    boolean enough = page.results().size() >= wanted;
+                    metrics.recordTier(operation, current.tag(), enough, System.nanoTime() - start);
+                    SearchPage kept = best == null || page.results().size() > best.results().size() ? page : best;
+                    if (enough || tier + 1 == TEXT_TIERS.length) {
+                        return CompletableFuture.completedFuture(kept);
+                    }
+                    return runTier(searcher, operation, index, routing, text, scope, size, wanted, tier + 1, kept);
+                });
+    }
+
+    /**
+     * Run a search and return the hits as {@link ProductDoc}s. Only the record's fields are
+     * fetched, and each source is deserialized once, straight from the response. The minimum
+     * score is applied here rather than as the request's {@code min_score}: hits arrive ordered
+     * by score, so the results are the same, and the hits that fall below it can be counted.
+     */
+    private CompletableFuture<List<ProductDoc>> executeSearch(Searcher searcher, String operation, String index, String routing,
+                                                              Query query, Integer size, Double minScore) {
+        return fetchPage(searcher, operation, index, routing, query, size, minScore).thenApply(page -> {
+            metrics.recordHits(operation, index, page.results().size(), page.filtered());
+            return page.results();
+        });
+    }
+
+    /**
+     * Hits kept and the number dropped for scoring below the minimum.
+     */
+    private record SearchPage(List<ProductDoc> results, int filtered) {
+    }
+
+    private CompletableFuture<SearchPage> fetchPage(Searcher searcher, String operation, String index, String routing,
+                                                    Query query, Integer size, Double minScore) {
         SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
                 .index(index)
+                .routing(routing)
                 .query(query)
-                .minScore(10.0);  // Filter out weak matches (score < 10)
+                .source(src -> src.filter(f -> f.includes(ProductDoc.SOURCE_FIELDS)));
 
         if (size != null && size > 0) {
             requestBuilder.size(size);
         }
 
-        SearchResponse<JsonData> response = client.search(requestBuilder.build(), JsonData.class);
+        SearchRequest request = requestBuilder.build();
+        return searcher.search(operation, index, request, ProductDoc.class).thenApply(response -> {
+            List<Hit<ProductDoc>> hits = response.hits().hits();
+            List<ProductDoc> results = new ArrayList<>(hits.size());
+            int filtered = 0;
+            for (Hit<ProductDoc> hit : hits) {
+                if (minScore != null && (hit.score() == null || hit.score() < minScore)) {
+                    filtered++;
+                    continue;
+                }
+                ProductDoc source = hit.source();
+                if (source != null) {
+                    results.add(source.withScore(hit.score()));
+                }
+            }
+            return new SearchPage(results, filtered);
+        });
+    }
 
-        List<Map<String, Object>> results = new ArrayList<>();
-        for (Hit<JsonData> hit : response.hits().hits()) {
-            JsonData source = hit.source();
-            if (source != null) {
-                Map<String, Object> document = source.to(Map.class);
-                Map<String, Object> enriched = new LinkedHashMap<>(document);
-                enriched.put("_score", hit.score());
-                results.add(enriched);
+    /**
+     * Sends the searches of one read operation through the async client, timed and wrapped in
+     * {@link ElasticsearchResilience} (deadline, hedging, retries, circuit breaker). All read
+     * operations are written once against this; the blocking methods wait for the same futures.
+     */
+    private interface Searcher {
+        <T> CompletableFuture<SearchResponse<T>> search(String operation, String index, SearchRequest request, Class<T> documentClass);
+    }
+
+    /**
+     * Searcher for an operation starting now; its deadline is taken from the calling thread's
+     * request here, since later searches (e.g. fallthrough tiers) run on I/O threads.
+     */
+    private Searcher searcher() {
+        long deadline = resilience.deadline();
+        return new Searcher() {
+            @Override
+            public <T> CompletableFuture<SearchResponse<T>> search(String operation, String index, SearchRequest request, Class<T> documentClass) {
+                return metrics.timeAsync(operation, index, () ->
+                        resilience.call(operation, deadline, () -> asyncClient.search(request, documentClass)));
             }
-        }
+        };
+    }
 
-        return results;
+    /**
+     * Waits for a read operation's future, rethrowing its failure as is.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
     }
 
 }
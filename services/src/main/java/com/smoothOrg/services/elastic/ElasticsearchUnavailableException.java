@@ -0,0 +1,15 @@
+package com.smoothOrg.services.elastic;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A search was rejected without calling Elasticsearch because the circuit breaker is open.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ElasticsearchUnavailableException extends RuntimeException {
+
+    public ElasticsearchUnavailableException(String operation) {
+        super("Elasticsearch is unavailable, " + operation + " rejected by the circuit breaker");
+    }
+}
@@ -0,0 +1,119 @@
+package com.smoothOrg.services.elastic;
+
+import com.smoothOrg.services.util.GeohashUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Custom {@code _routing} of product documents by geohash prefix, so all listings of a region
+ * (a 4-character prefix is roughly 40 x 20 km, about a city) live on one shard and searches
+ * scoped to a location only query that shard instead of fanning out to the whole index.
+ * <p>
+ * Writers route each document by the prefix of its {@code geohash}; documents without one are
+ * routed by id as usual. Searches with a location route to the prefixes of every cell they can
+ * match, which is a single shard unless the area straddles a region border. Disabled with a
+ * precision of 0.
+ * <p>
+ * A document is stored under the routing it was written with: one whose geohash moves to
+ * another region has to be deleted under the old routing (catalog ingestion remembers each
+ * document's routing as {@link #toLong} for this), and switching an existing index to a
+ * different precision means reindexing it.
+ */
+@Component
+public class GeoRouting {
+
+    /**
+     * Painless version of {@link #of(Map)} for {@code _reindex}: sets {@code ctx._routing} from
+     * the document's geohash at {@code params.precision}, or clears it when that gives no routing,
+     * whatever routing the source document was stored under.
+     */
+    public static final String REINDEX_SCRIPT = """
+            String geohash = ctx._source.geohash instanceof String ? ctx._source.geohash.toLowerCase() : null;
+            String routing = null;
+            if (params.precision > 0 && geohash != null && geohash.length() >= params.precision) {
+                routing = geohash.substring(0, params.precision);
+                for (int i = 0; i < routing.length(); i++) {
+                    if ('0123456789bcdefghjkmnpqrstuvwxyz'.indexOf(routing.substring(i, i + 1)) < 0) {
+                        routing = null;
+                        break;
+                    }
+                }
+            }
+            ctx._routing = routing;
+            """;
+
+    private final int precision;
+
+    public GeoRouting(@Value("${app.elasticsearch.routing.geohash-precision:4}") int precision) {
+        this.precision = Math.max(0, Math.min(precision, GeohashUtils.MAX_LONG_PRECISION));
+    }
+
+    public boolean isEnabled() {
+        return precision > 0;
+    }
+
+    /**
+     * Geohash prefix length documents are routed by, 0 when routing is off.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Routing of a document or search in {@code geohash}, or null when routing is off or the
+     * geohash is missing, malformed or coarser than the routing precision.
+     */
+    public String of(String geohash) {
+        if (!isEnabled() || geohash == null || geohash.length() < precision) {
+            return null;
+        }
+        String prefix = geohash.substring(0, precision).toLowerCase(Locale.ROOT);
+        return GeohashUtils.isValid(prefix) ? prefix : null;
+    }
+
+    /**
+     * Routing of a product document, from its {@code geohash} field.
+     */
+    public String of(Map<String, ?> document) {
+        return document.get("geohash") instanceof String geohash ? of(geohash) : null;
+    }
+
+    /**
+     * Routing that reaches every one of {@code cells}: their distinct prefixes, comma
+     * separated. Null (search every shard) if any cell is too coarse to route.
+     */
+    public String covering(Collection<String> cells) {
+        if (!isEnabled() || cells.isEmpty()) {
+            return null;
+        }
+        TreeSet<String> routes = new TreeSet<>();
+        for (String cell : cells) {
+            String route = of(cell);
+            if (route == null) {
+                return null;
+            }
+            routes.add(route);
+        }
+        return String.join(",", routes);
+    }
+
+    /**
+     * A routing returned by {@link #of} as a {@code long} (the {@link GeohashUtils} form of the
+     * prefix), 0 for none.
+     */
+    public static long toLong(String routing) {
+        return routing == null ? 0 : GeohashUtils.fromGeohashString(routing);
+    }
+
+    /**
+     * Inverse of {@link #toLong}.
+     */
+    public static String fromLong(long routing) {
+        return routing == 0 ? null : GeohashUtils.toGeohashString(routing);
+    }
+}
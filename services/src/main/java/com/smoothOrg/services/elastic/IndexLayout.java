@@ -0,0 +1,26 @@
+package com.smoothOrg.services.elastic;
+
+/**
+ * Shard layout of a new index.
+ *
+ * @param shards                primary shards; with {@link GeoRouting} each region lands on one
+ * @param replicas              replicas of each primary
+ * @param routingPartitionSize  shards each routing value is spread over, to keep a large region
+ *                              from making one shard hot (1 = exactly one shard; must be below
+ *                              {@code shards}; above 1 needs {@code routingRequired})
+ * @param routingRequired       reject documents written without a routing value
+ */
+public record IndexLayout(int shards, int replicas, int routingPartitionSize, boolean routingRequired) {
+
+    public IndexLayout {
+        if (shards < 1) {
+            throw new IllegalArgumentException("An index needs at least one shard");
+        }
+        if (routingPartitionSize < 1 || (routingPartitionSize > 1 && routingPartitionSize >= shards)) {
+            throw new IllegalArgumentException("routingPartitionSize must be 1 or below the shard count");
+        }
+        if (routingPartitionSize > 1 && !routingRequired) {
+            throw new IllegalArgumentException("A routing partition size above 1 needs required routing");
+        }
+    }
+}
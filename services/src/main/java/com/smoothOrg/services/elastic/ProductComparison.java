@@ -0,0 +1,33 @@
+package com.smoothOrg.services.elastic;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One product with its price on every platform, built server-side from the
+ * per-platform documents. Field names match the product maps the cart calculators read.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductComparison(@JsonProperty("product_id") String productId,
+                                @JsonProperty("product_name") String productName,
+                                @JsonProperty("brand_name") String brandName,
+                                @JsonProperty("image_url") String imageUrl,
+                                String quantity,
+                                @JsonProperty("_score") Double score,
+                                List<PlatformPrice> platforms) {
+
+    ProductComparison withListings(Double hitScore, List<PlatformPrice> listings) {
+        return new ProductComparison(productId, productName, brandName, imageUrl, quantity, hitScore, listings);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PlatformPrice(String platform,
+                                @JsonProperty("selling_price") Double sellingPrice,
+                                Double mrp,
+                                Boolean availability,
+                                Integer inventory,
+                                @JsonProperty("product_url") String productUrl) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.smoothOrg.services.elastic;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One platform listing as returned by the product searches: the fields the UI shows and the
+ * cart reads, plus the hit's score. Searches fetch only {@link #SOURCE_FIELDS} and the client
+ * deserializes each {@code _source} straight into this record. Field names match the index,
+ * so a result can be posted back to the cart unchanged.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductDoc(String platform,
+                         @JsonProperty("product_id") String productId,
+                         @JsonProperty("product_name") String productName,
+                         @JsonProperty("brand_name") String brandName,
+                         String categories,
+                         @JsonProperty("sub_categories") String subCategories,
+                         String quantity,
+                         Double mrp,
+                         @JsonProperty("selling_price") Double sellingPrice,
+                         @JsonProperty("discount_percent") Double discountPercent,
+                         Boolean availability,
+                         Integer inventory,
+                         @JsonProperty("stock_status") String stockStatus,
+                         @JsonProperty("image_url") String imageUrl,
+                         @JsonProperty("product_url") String productUrl,
+                         String geohash,
+                         @JsonProperty("_score") Double score,
+                         @JsonProperty("_geohash_match") String geohashMatch) {
+
+    /**
+     * Source fields requested from Elasticsearch; everything else stays on the server.
+     */
+    public static final List<String> SOURCE_FIELDS = List.of(
+            "platform", "product_id", "product_name", "brand_name", "categories", "sub_categories",
+            "quantity", "mrp", "selling_price", "discount_percent", "availability", "inventory",
+            "stock_status", "image_url", "product_url", "geohash");
+
+    ProductDoc withScore(Double hitScore) {
+        return withMatch(hitScore, geohashMatch);
+    }
+
+    ProductDoc withMatch(Double hitScore, String match) {
+        return new ProductDoc(platform, productId, productName, brandName, categories, subCategories,
+                quantity, mrp, sellingPrice, discountPercent, availability, inventory, stockStatus,
+                imageUrl, productUrl, geohash, hitScore, match);
+    }
+}
@@ -0,0 +1,16 @@
+package com.smoothOrg.services.elastic;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A reindex cannot start in the current state of the cluster, e.g. the alias is already being
+ * reindexed or the next index version exists.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ReindexConflictException extends RuntimeException {
+
+    public ReindexConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,60 @@
+package com.smoothOrg.services.elastic;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of a {@link ReindexService} job.
+ *
+ * @param phase             where the job is; the alias only moves in {@code SWITCHING}
+ * @param total             documents the running copy pass will read
+ * @param created           documents written to the new index by the copy pass
+ * @param updated           documents overwritten by the copy pass
+ * @param versionConflicts  documents the copy pass skipped on a version conflict, which only
+ *                          happens if something else writes to the new index
+ * @param batches           scroll batches processed
+ * @param caughtUp          documents updated during the copy that the catch-up pass copied again,
+ *                          with the old index blocked for writes, before the switch
+ * @param requestsPerSecond current throttle, -1 for unthrottled
+ * @param error             why the job failed, null otherwise
+ */
+public record ReindexProgress(String jobId,
+                              String alias,
+                              String source,
+                              String target,
+                              Phase phase,
+                              long total,
+                              long created,
+                              long updated,
+                              long versionConflicts,
+                              long batches,
+                              long caughtUp,
+                              float requestsPerSecond,
+                              long elapsedMillis,
+                              String error) {
+
+    public enum Phase {
+        CREATING, COPYING, CATCHING_UP, SWITCHING, DONE, FAILED
+    }
+
+    @JsonProperty
+    public double docsPerSecond() {
+        long copied = created + updated + caughtUp;
+        return elapsedMillis == 0 ? copied : copied * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Share of the copy pass done, 0 until its document count is known.
+     */
+    @JsonProperty
+    public double percentDone() {
+        return total == 0 ? 0 : Math.min(100.0, (created + updated + versionConflicts) * 100.0 / total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s -> %s (alias %s): %s %.1f%% total=%d created=%d updated=%d conflicts=%d "
+                        + "batches=%d caught-up=%d in %d ms (%.0f docs/sec)%s",
+                jobId, source, target, alias, phase, percentDone(), total, created, updated, versionConflicts,
+                batches, caughtUp, elapsedMillis, docsPerSecond(), error != null ? " error=" + error : "");
+    }
+}
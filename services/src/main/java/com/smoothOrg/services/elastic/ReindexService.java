@@ -0,0 +1,383 @@
+package com.smoothOrg.services.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.Slices;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.ReindexResponse;
+import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.json.JsonData;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rebuilds the index behind an alias with new settings or mappings while searches keep going
+ * through the alias.
+ * <p>
+ * A job creates the next version of the index ({@code grocery_products_v1} becomes
+ * {@code _v2}) from the given definition, copies every document into it with a server-side
+ * {@code _reindex} split into parallel slices and throttled to
+ * {@code app.reindex.requests-per-second}, then moves the alias in one atomic
+ * {@code _aliases} call. Replicas and refresh are off on the new index during the copy and
+ * restored before the switch.
+ * <p>
+ * Both passes set each copy's {@code _routing} from its geohash at the configured
+ * {@link GeoRouting} precision, so documents from an unrouted source, or one routed at another
+ * precision, are found by routed searches on the new index.
+ * <p>
+ * Writes keep reaching the old index during the copy. Before the switch the old index is
+ * blocked for writes and a second pass copies the documents whose {@value #INGESTED_AT} is at or
+ * after the start of the copy, less {@code app.reindex.catch-up-margin-ms} for clock skew and
+ * writes in flight. Every writer stamps that field with the time it sent the document, unlike
+ * {@code updated_at}, which ingestion takes from the feed. Nothing but this job writes to the
+ * new index until the alias points at it, and no version is compared across the two indices. Writes made while the block
+ * is on (the short second pass and the switch) are rejected, and ingestion sends them again on
+ * its next run. Deletes made during the copy are not carried over. The old index is left in
+ * place, writable again, for rollback.
+ */
+@Service
+public class ReindexService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReindexService.class);
+
+    /**
+     * Product field holding when the document was last written, which the catch-up pass filters on.
+     */
+    public static final String INGESTED_AT = "ingested_at";
+
+    private static final Pattern VERSIONED = Pattern.compile("(.*_v)(\\d+)");
+
+    private final ElasticsearchClient client;
+    private final ElasticsearchMetrics metrics;
+    private final CachingElasticsearchService searchCache;
+    private final GeoRouting geoRouting;
+    private final int defaultSlices;
+    private final float defaultRequestsPerSecond;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long catchUpMarginMs;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Job> running = new ConcurrentHashMap<>();
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "es-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReindexService(ElasticsearchClient client,
+                          ElasticsearchMetrics metrics,
+                          CachingElasticsearchService searchCache,
+                          GeoRouting geoRouting,
+                          @Value("${app.reindex.slices:0}") int defaultSlices,
+                          @Value("${app.reindex.requests-per-second:-1}") float defaultRequestsPerSecond,
+                          @Value("${app.reindex.batch-size:1000}") int batchSize,
+                          @Value("${app.reindex.poll-interval-ms:2000}") long pollIntervalMs,
+                          @Value("${app.reindex.catch-up-margin-ms:60000}") long catchUpMarginMs) {
+        this.client = client;
+        this.metrics = metrics;
+        this.searchCache = searchCache;
+        this.geoRouting = geoRouting;
+        this.defaultSlices = defaultSlices;
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.catchUpMarginMs = catchUpMarginMs;
+    }
+
+    /**
+     * Start rebuilding the index behind {@code alias} from {@code definitionJson}, the body of a
+     * create index request (settings and mappings). Returns once the job is queued.
+     *
+     * @param slices            parallel copy slices, 0 for one per shard (null: configured default)
+     * @param requestsPerSecond documents per second across all slices, -1 for no limit
+     *                          (null: configured default)
+     * @throws ReindexConflictException if the alias does not point at exactly one index, is
+     *                                  already being reindexed, or the next version exists
+     */
+    public ReindexProgress start(String alias, String definitionJson, Integer slices, Float requestsPerSecond)
+            throws IOException {
+        String source = currentIndex(alias);
+        String target = nextVersion(alias, source);
+        if (client.indices().exists(e -> e.index(target)).value()) {
+            throw new ReindexConflictException("Index " + target + " already exists; delete it to reindex " + alias + " again");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), alias, source, target,
+                slices != null ? slices : defaultSlices,
+                requestsPerSecond != null ? requestsPerSecond : defaultRequestsPerSecond);
+        Job other = running.putIfAbsent(alias, job);
+        if (other != null) {
+            throw new ReindexConflictException("Alias " + alias + " is already being reindexed by job " + other.id);
+        }
+        jobs.put(job.id, job);
+        workers.execute(() -> run(job, definitionJson));
+        return job.snapshot();
+    }
+
+    /**
+     * Progress of a job, or null if there is no such job.
+     */
+    public ReindexProgress progress(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+
+    /**
+     * All jobs since startup, newest first.
+     */
+    public List<ReindexProgress> jobs() {
+        List<Job> all = new ArrayList<>(jobs.values());
+        all.sort(Comparator.comparingLong((Job job) -> job.startNanos).reversed());
+        return all.stream().map(Job::snapshot).toList();
+    }
+
+    /**
+     * Change a job's throttle; a running copy pass picks it up at its next batch.
+     *
+     * @return the job's progress, or null if there is no such job
+     */
+    public ReindexProgress rethrottle(String jobId, float requestsPerSecond) throws IOException {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        job.requestsPerSecond = requestsPerSecond;
+        String task = job.task;
+        if (task != null && !job.isFinished()) {
+            metrics.time("reindex_rethrottle", job.alias,
+                    () -> client.reindexRethrottle(r -> r.taskId(task).requestsPerSecond(requestsPerSecond)));
+        }
+        return job.snapshot();
+    }
+
+    private String currentIndex(String alias) throws IOException {
+        if (!client.indices().existsAlias(a -> a.name(alias)).value()) {
+            throw new ReindexConflictException("Alias " + alias + " does not exist; point it at the current index "
+                    + "first (POST _aliases, see ingestion.txt)");
+        }
+        Set<String> indices = client.indices().getAlias(a -> a.name(alias)).result().keySet();
+        if (indices.size() != 1) {
+            throw new ReindexConflictException("Alias " + alias + " points at " + indices + ", expected exactly one index");
+        }
+        return indices.iterator().next();
+    }
+
+    /**
+     * {@code name_vN} becomes {@code name_vN+1}; an unversioned index is followed by
+     * {@code <alias>_v2}.
+     */
+    static String nextVersion(String alias, String index) {
+        Matcher versioned = VERSIONED.matcher(index);
+        return versioned.matches()
+                ? versioned.group(1) + (Long.parseLong(versioned.group(2)) + 1)
+                : alias + "_v2";
+    }
+
+    private void run(Job job, String definitionJson) {
+        try {
+            job.phase = ReindexProgress.Phase.CREATING;
+            createTarget(job, definitionJson);
+
+            job.phase = ReindexProgress.Phase.COPYING;
+            Instant copyStart = Instant.now();
+            copy(job, null);
+            metrics.time("put_settings", job.target, () -> client.indices().putSettings(p -> p
+                    .index(job.target)
+                    .settings(s -> s.numberOfReplicas(job.replicas).refreshInterval(job.refreshInterval))));
+
+            job.phase = ReindexProgress.Phase.CATCHING_UP;
+            blockWrites(job.source, true);
+            try {
+                copy(job, copyStart.minusMillis(catchUpMarginMs));
+                metrics.time("refresh", job.target, () -> client.indices().refresh(r -> r.index(job.target)));
+
+                job.phase = ReindexProgress.Phase.SWITCHING;
+                metrics.time("update_aliases", job.alias, () -> client.indices().updateAliases(u -> u
+                        .actions(a -> a.remove(r -> r.index(job.source).alias(job.alias)))
+                        .actions(a -> a.add(r -> r.index(job.target).alias(job.alias)))));
+                searchCache.invalidateIndex(job.alias);
+                log.info("Alias {} switched from {} to {}", job.alias, job.source, job.target);
+            } finally {
+                blockWrites(job.source, false);
+            }
+
+            job.finish(ReindexProgress.Phase.DONE, null);
+            log.info("Reindex finished: {}", job.snapshot());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(ReindexProgress.Phase.FAILED, "Interrupted while " + job.phase);
+            log.warn("Reindex interrupted, task {} keeps running on the cluster: {}", job.task, job.snapshot());
+        } catch (Exception e) {
+            job.finish(ReindexProgress.Phase.FAILED, e.getMessage());
+            log.error("Reindex failed: {}", job.snapshot(), e);
+        } finally {
+            running.remove(job.alias, job);
+        }
+    }
+
+    /**
+     * Create the new index, remember the replicas and refresh interval it asks for, and turn
+     * both off until the copy is done.
+     */
+    private void createTarget(Job job, String definitionJson) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest.Builder()
+                .withJson(new StringReader(definitionJson))
+                .index(job.target)
+                .build();
+        metrics.time("create_index", job.target, () -> client.indices().create(request));
+
+        IndexSettings created = client.indices().getSettings(g -> g.index(job.target)).get(job.target).settings();
+        IndexSettings settings = created.index() != null ? created.index() : created;
+        job.replicas = settings.numberOfReplicas() != null ? settings.numberOfReplicas() : "1";
+        job.refreshInterval = settings.refreshInterval() != null ? settings.refreshInterval() : Time.of(t -> t.time("1s"));
+        metrics.time("put_settings", job.target, () -> client.indices().putSettings(p -> p
+                .index(job.target)
+                .settings(s -> s.numberOfReplicas("0").refreshInterval(t -> t.time("-1")))));
+    }
+
+    private void blockWrites(String index, boolean blocked) throws IOException {
+        metrics.time("put_settings", index, () -> client.indices().putSettings(p -> p
+                .index(index)
+                .settings(s -> s.blocks(b -> b.write(blocked)))));
+    }
+
+    /**
+     * Run one {@code _reindex} pass as a cluster task and poll it until it completes. The
+     * catch-up pass only copies documents written at or after {@code since} (null: all of them)
+     * and overwrites what the first pass wrote for them.
+     */
+    private void copy(Job job, Instant since) throws IOException, InterruptedException {
+        boolean catchUp = since != null;
+        Slices slices = job.slices > 0
+                ? Slices.of(s -> s.value(job.slices))
+                : Slices.of(s -> s.computed(SlicesCalculation.Auto));
+        ReindexResponse started = metrics.time("reindex", job.alias, () -> client.reindex(r -> r
+                .source(s -> {
+                    s.index(job.source).size(batchSize);
+                    return catchUp
+                            ? s.query(q -> q.range(g -> g.date(d -> d.field(INGESTED_AT).gte(since.toString()))))
+                            : s;
+                })
+                .dest(d -> d.index(job.target))
+                .script(c -> c.source(GeoRouting.REINDEX_SCRIPT).params("precision", JsonData.of(geoRouting.precision())))
+                .conflicts(Conflicts.Proceed)
+                .slices(slices)
+                .requestsPerSecond(job.requestsPerSecond)
+                .waitForCompletion(false)));
+        job.task = started.task();
+
+        while (true) {
+            Thread.sleep(pollIntervalMs);
+            GetTasksResponse task = metrics.time("reindex_status", job.alias,
+                    () -> client.tasks().get(t -> t.taskId(job.task)));
+            JsonData status = task.completed() && task.response() != null ? task.response() : task.task().status();
+            JsonObject counts = status != null ? status.toJson().asJsonObject() : JsonObject.EMPTY_JSON_OBJECT;
+            job.update(counts, catchUp);
+            if (task.completed()) {
+                ErrorCause error = task.error();
+                if (error != null) {
+                    throw new IllegalStateException("Reindex task " + job.task + " failed: " + error.reason());
+                }
+                JsonArray failures = counts.getJsonArray("failures");
+                if (failures != null && !failures.isEmpty()) {
+                    throw new IllegalStateException(failures.size() + " documents failed to copy, first: " + failures.get(0));
+                }
+                return;
+            }
+            log.info("Reindex progress: {}", job.snapshot());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Mutable state of one job, written by its worker and read by {@link #snapshot()}.
+     */
+    private static final class Job {
+        final String id;
+        final String alias;
+        final String source;
+        final String target;
+        final int slices;
+        final long startNanos = System.nanoTime();
+        volatile float requestsPerSecond;
+        volatile ReindexProgress.Phase phase = ReindexProgress.Phase.CREATING;
+        volatile String task;
+        volatile String replicas;
+        volatile Time refreshInterval;
+        volatile long total;
+        volatile long created;
+        volatile long updated;
+        volatile long versionConflicts;
+        volatile long batches;
+        volatile long caughtUp;
+        volatile long finishedNanos;
+        volatile String error;
+
+        Job(String id, String alias, String source, String target, int slices, float requestsPerSecond) {
+            this.id = id;
+            this.alias = alias;
+            this.source = source;
+            this.target = target;
+            this.slices = slices;
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        void update(JsonObject counts, boolean catchUp) {
+            if (catchUp) {
+                caughtUp = count(counts, "created") + count(counts, "updated");
+                return;
+            }
+            total = count(counts, "total");
+            created = count(counts, "created");
+            updated = count(counts, "updated");
+            versionConflicts = count(counts, "version_conflicts");
+            batches = count(counts, "batches");
+        }
+
+        private static long count(JsonObject counts, String name) {
+            return counts.containsKey(name) ? counts.getJsonNumber(name).longValue() : 0;
+        }
+
+        void finish(ReindexProgress.Phase phase, String error) {
+            this.error = error;
+            this.finishedNanos = System.nanoTime();
+            this.phase = phase;
+        }
+
+        boolean isFinished() {
+            return finishedNanos != 0;
+        }
+
+        ReindexProgress snapshot() {
+            long end = isFinished() ? finishedNanos : System.nanoTime();
+            return new ReindexProgress(id, alias, source, target, phase, total, created, updated, versionConflicts,
+                    batches, caughtUp, requestsPerSecond, (end - startNanos) / 1_000_000, error);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.smoothOrg.services.elastic;
+
+/**
+ * Deadline of the request being handled on the current thread, as a {@link System#nanoTime()}
+ * instant. Set by the web tier when a request arrives; searches read it once when they start
+ * and carry it across the threads they continue on.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(long deadlineNanos) {
+        DEADLINE.set(deadlineNanos);
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * The current thread's deadline, or null outside a request.
+     */
+    public static Long get() {
+        return DEADLINE.get();
+    }
+}
@@ -0,0 +1,15 @@
+package com.smoothOrg.services.elastic;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A search did not finish within its request's deadline; attempts still in flight were cancelled.
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class SearchDeadlineExceededException extends RuntimeException {
+
+    public SearchDeadlineExceededException(String operation) {
+        super("Elasticsearch " + operation + " exceeded the request deadline");
+    }
+}
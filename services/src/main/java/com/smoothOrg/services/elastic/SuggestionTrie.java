@@ -0,0 +1,116 @@
+package com.smoothOrg.services.elastic;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prefix trie of cached autocomplete suggestions for one index and geohash cell.
+ * <p>
+ * Each node holds the top suggestions fetched for its prefix. A node is <em>complete</em> when
+ * Elasticsearch returned fewer suggestions than were asked for, i.e. it holds every completion
+ * of that prefix; longer prefixes below it are then answered by filtering its list, without
+ * another request. When the trie grows past {@code maxNodes} it is cleared and refilled.
+ * <p>
+ * All access is guarded by one {@link ReentrantLock}.
+ */
+final class SuggestionTrie {
+
+    private final int maxNodes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Node root = new Node();
+    private int nodes = 1;
+
+    SuggestionTrie(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    private static final class Node {
+        Map<Character, Node> children;
+        List<String> suggestions;
+        boolean complete;
+    }
+
+    /**
+     * Lower-cases and collapses everything but letters and digits to single spaces, roughly how
+     * the completion field's standard analyzer sees the input.
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) normalized.append(' ');
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Cached suggestions for a normalized prefix, or null when Elasticsearch has to be asked.
+     */
+    List<String> get(String prefix) {
+        lock.lock();
+        try {
+            return find(prefix);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(String prefix, List<String> suggestions, boolean complete) {
+        lock.lock();
+        try {
+            insert(prefix, suggestions, complete);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<String> find(String prefix) {
+        Node node = root;
+        Node completeAncestor = null;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            if (node.complete) completeAncestor = node;
+            node = node.children != null ? node.children.get(prefix.charAt(i)) : null;
+        }
+        if (node != null && node.suggestions != null) {
+            return node.suggestions;
+        }
+        if (completeAncestor == null) {
+            return null;
+        }
+        // Every completion of the ancestor is known, so the ones for this prefix are among them
+        List<String> narrowed = completeAncestor.suggestions.stream()
+                .filter(suggestion -> normalize(suggestion).startsWith(prefix))
+                .toList();
+        insert(prefix, narrowed, true);
+        return narrowed;
+    }
+
+    private void insert(String prefix, List<String> suggestions, boolean complete) {
+        if (nodes + prefix.length() > maxNodes) {
+            root = new Node();
+            nodes = 1;
+        }
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (node.children == null) node.children = new HashMap<>(4);
+            Node child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                child = new Node();
+                node.children.put(prefix.charAt(i), child);
+                nodes++;
+            }
+            node = child;
+        }
+        node.suggestions = List.copyOf(suggestions);
+        node.complete = complete;
+    }
+}
@@ -0,0 +1,47 @@
+package com.smoothOrg.services.pricehistory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Price history of a product over the last {@code days} days, one series per platform and
+ * geohash cell. Prices are in rupees.
+ */
+public record PriceHistory(String productId, int days, List<Series> series) {
+
+    /**
+     * @param minPrice  lowest price in effect during the window, including the one it opened with
+     * @param avgPrice  average of the price the window opened with and of each change in it
+     * @param lastPrice latest recorded price, set at {@code lastChangedAt} (which may be before
+     *                  the window when the price has not changed since)
+     * @param points    price points counted, the opening price included
+     * @param daily     per-day rollups of days in the window with a change, oldest first; only
+     *                  when requested
+     */
+    public record Series(String platform,
+                         String geohash,
+                         double minPrice,
+                         double maxPrice,
+                         double avgPrice,
+                         double lastPrice,
+                         Instant lastChangedAt,
+                         long points,
+                         List<Day> daily) {
+    }
+
+    /**
+     * @param intraday the day's individual price points; only when requested
+     */
+    public record Day(LocalDate day,
+                      double open,
+                      double min,
+                      double max,
+                      double close,
+                      int points,
+                      List<Point> intraday) {
+    }
+
+    public record Point(Instant at, double price) {
+    }
+}
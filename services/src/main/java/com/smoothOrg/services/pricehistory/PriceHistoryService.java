@@ -0,0 +1,323 @@
+package com.smoothOrg.services.pricehistory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smoothOrg.domain.entity.ProductPriceDay;
+import com.smoothOrg.domain.repository.ProductPriceDayRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selling price history per product, platform and geohash cell, fed by catalog ingestion.
+ * <p>
+ * Each series is stored as one {@link ProductPriceDay} row per day (in
+ * {@code app.price-history.zone}): the day's open/min/max/close/sum rollup plus its price
+ * points in {@link PriceSeriesCodec} form. A point is only added when the price differs from
+ * the one before it, so unchanged prices re-sent by every feed run cost nothing.
+ * <p>
+ * Summaries over the last N days read only the rollup columns of at most N rows per series,
+ * never the points, plus the last row before the window, whose close is the price in effect when
+ * the window starts (a stable price writes no rows). They are cached per product for
+ * {@code app.price-history.cache.ttl-seconds}; recording a product's prices evicts its entries.
+ * Days older than {@code app.price-history.retention-days} are dropped by {@link #purgeExpired()},
+ * except the latest day of each series.
+ */
+@Service
+public class PriceHistoryService {
+
+    private final ProductPriceDayRepository repository;
+    private final TransactionTemplate transactions;
+    private final boolean enabled;
+    private final ZoneId zone;
+    private final int retentionDays;
+    private final Cache<HistoryKey, PriceHistory> cache;
+
+    public PriceHistoryService(ProductPriceDayRepository repository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.price-history.enabled:true}") boolean enabled,
+                               @Value("${app.price-history.zone:Asia/Kolkata}") String zone,
+                               @Value("${app.price-history.retention-days:365}") int retentionDays,
+                               @Value("${app.price-history.cache.max-entries:10000}") long maxEntries,
+                               @Value("${app.price-history.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.repository = repository;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.zone = ZoneId.of(zone);
+        this.retentionDays = retentionDays;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    record HistoryKey(String productId, int days, String platform, String geohash, boolean daily) {
+    }
+
+    record SeriesKey(String productId, String platform, String geohash) {
+        static SeriesKey of(PriceObservation observation) {
+            return new SeriesKey(observation.productId(), observation.platform(), observation.geohash());
+        }
+
+        static SeriesKey of(ProductPriceDay day) {
+            return new SeriesKey(day.getProductId(), day.getPlatform(), day.getGeohash());
+        }
+    }
+
+    /**
+     * Columns of a day row a summary needs, from an entity or a rollup projection.
+     */
+    private record DayRow(String platform, String geohash, LocalDate day, int pointCount, long open, long min,
+                          long max, long close, long sum, Instant closedAt, byte[] points) {
+
+        static DayRow of(ProductPriceDayRepository.Rollup rollup) {
+            return new DayRow(rollup.getPlatform(), rollup.getGeohash(), rollup.getDay(), rollup.getPointCount(),
+                    rollup.getOpenPaise(), rollup.getMinPaise(), rollup.getMaxPaise(), rollup.getClosePaise(),
+                    rollup.getSumPaise(), rollup.getClosedAt(), null);
+        }
+
+        static DayRow of(ProductPriceDay day) {
+            return new DayRow(day.getPlatform(), day.getGeohash(), day.getDay(), day.getPointCount(),
+                    day.getOpenPaise(), day.getMinPaise(), day.getMaxPaise(), day.getClosePaise(),
+                    day.getSumPaise(), day.getClosedAt(), day.getPoints());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add observed prices to their series, in one transaction. Observations may arrive in any
+     * order and repeat prices already recorded.
+     */
+    public void record(Collection<PriceObservation> observations) {
+        if (!enabled || observations.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, Map<SeriesKey, List<PriceObservation>>> byDay = new HashMap<>();
+        for (PriceObservation observation : observations) {
+            byDay.computeIfAbsent(LocalDate.ofInstant(observation.observedAt(), zone), day -> new HashMap<>())
+                    .computeIfAbsent(SeriesKey.of(observation), key -> new ArrayList<>())
+                    .add(observation);
+        }
+        Set<String> productIds = new HashSet<>();
+        transactions.executeWithoutResult(status -> {
+            List<ProductPriceDay> changed = new ArrayList<>();
+            for (Map.Entry<LocalDate, Map<SeriesKey, List<PriceObservation>>> day : byDay.entrySet()) {
+                Set<String> dayProducts = new HashSet<>();
+                day.getValue().keySet().forEach(key -> dayProducts.add(key.productId()));
+                Map<SeriesKey, ProductPriceDay> rows = new HashMap<>();
+                for (ProductPriceDay row : repository.findByDayAndProductIdIn(day.getKey(), dayProducts)) {
+                    rows.put(SeriesKey.of(row), row);
+                }
+                for (Map.Entry<SeriesKey, List<PriceObservation>> series : day.getValue().entrySet()) {
+                    SeriesKey key = series.getKey();
+                    ProductPriceDay row = rows.computeIfAbsent(key,
+                            k -> new ProductPriceDay(k.productId(), k.platform(), k.geohash(), day.getKey()));
+                    if (append(row, series.getValue())) {
+                        changed.add(row);
+                        productIds.add(key.productId());
+                    }
+                }
+            }
+            repository.saveAll(changed);
+        });
+        // After the commit, so a concurrent summary cannot cache the old rows again
+        if (!productIds.isEmpty()) {
+            cache.asMap().keySet().removeIf(key -> productIds.contains(key.productId()));
+        }
+    }
+
+    /**
+     * Merge observations into a day's points and recompute its rollup.
+     *
+     * @return whether any point was added
+     */
+    private boolean append(ProductPriceDay row, List<PriceObservation> observations) {
+        PriceSeriesCodec.Points current = row.getPoints() != null
+                ? PriceSeriesCodec.decode(row.getPoints())
+                : new PriceSeriesCodec.Points(new int[0], new long[0]);
+        long dayStart = row.getDay().atStartOfDay(zone).toEpochSecond();
+
+        int total = current.size() + observations.size();
+        long[][] merged = new long[total][];
+        for (int i = 0; i < current.size(); i++) {
+            merged[i] = new long[]{current.seconds()[i], current.prices()[i]};
+        }
+        for (int i = 0; i < observations.size(); i++) {
+            PriceObservation observation = observations.get(i);
+            merged[current.size() + i] = new long[]{observation.observedAt().getEpochSecond() - dayStart, observation.pricePaise()};
+        }
+        // Stable, so a recorded point stays ahead of a new one at the same second
+        Arrays.sort(merged, Comparator.comparingLong(point -> point[0]));
+
+        int[] seconds = new int[total];
+        long[] prices = new long[total];
+        int count = 0;
+        for (long[] point : merged) {
+            if (count > 0 && prices[count - 1] == point[1]) {
+                continue;
+            }
+            seconds[count] = (int) point[0];
+            prices[count] = point[1];
+            count++;
+        }
+        if (count == current.size()
+                && Arrays.equals(seconds, 0, count, current.seconds(), 0, count)
+                && Arrays.equals(prices, 0, count, current.prices(), 0, count)) {
+            return false;
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, prices[i]);
+            max = Math.max(max, prices[i]);
+            sum += prices[i];
+        }
+        row.setPointCount(count);
+        row.setOpenPaise(prices[0]);
+        row.setMinPaise(min);
+        row.setMaxPaise(max);
+        row.setClosePaise(prices[count - 1]);
+        row.setSumPaise(sum);
+        row.setClosedAt(Instant.ofEpochSecond(dayStart + seconds[count - 1]));
+        row.setPoints(PriceSeriesCodec.encode(seconds, prices, count));
+        return true;
+    }
+
+    /**
+     * Price history of a product over the last {@code days} days including today.
+     *
+     * @param platform only this platform when set
+     * @param geohash  only cells starting with this prefix when set
+     * @param daily    include the per-day rollups
+     * @param intraday include every price point of each day (implies daily; not cached)
+     */
+    public PriceHistory history(String productId, int days, String platform, String geohash,
+                                boolean daily, boolean intraday) {
+        int window = Math.max(1, Math.min(days, retentionDays));
+        String platformFilter = platform != null ? platform.toLowerCase(Locale.ROOT) : null;
+        String cellFilter = geohash != null ? geohash.toLowerCase(Locale.ROOT) : null;
+        if (intraday) {
+            return load(productId, window, platformFilter, cellFilter, true, true);
+        }
+        return cache.get(new HistoryKey(productId, window, platformFilter, cellFilter, daily),
+                key -> load(productId, window, platformFilter, cellFilter, daily, false));
+    }
+
+    private PriceHistory load(String productId, int days, String platform, String geohash,
+                              boolean daily, boolean intraday) {
+        LocalDate from = LocalDate.now(zone).minusDays(days - 1L);
+        List<DayRow> rows = intraday
+                ? repository.findByProductIdAndDayGreaterThanEqualOrderByDayAsc(productId, from, ProductPriceDay.class)
+                        .stream().map(DayRow::of).toList()
+                : repository.findByProductIdAndDayGreaterThanEqualOrderByDayAsc(productId, from, ProductPriceDayRepository.Rollup.class)
+                        .stream().map(DayRow::of).toList();
+
+        Map<List<String>, DayRow> openings = new HashMap<>();
+        Map<List<String>, List<DayRow>> bySeries = new LinkedHashMap<>();
+        for (ProductPriceDayRepository.Rollup before : repository.findLastDaysBefore(productId, from)) {
+            DayRow row = DayRow.of(before);
+            if (matches(row, platform, geohash)) {
+                openings.put(List.of(row.platform(), row.geohash()), row);
+                bySeries.put(List.of(row.platform(), row.geohash()), new ArrayList<>());
+            }
+        }
+        for (DayRow row : rows) {
+            if (!matches(row, platform, geohash)) continue;
+            bySeries.computeIfAbsent(List.of(row.platform(), row.geohash()), key -> new ArrayList<>()).add(row);
+        }
+
+        List<PriceHistory.Series> series = new ArrayList<>(bySeries.size());
+        for (Map.Entry<List<String>, List<DayRow>> seriesDays : bySeries.entrySet()) {
+            series.add(summarize(openings.get(seriesDays.getKey()), seriesDays.getValue(), daily || intraday, intraday));
+        }
+        return new PriceHistory(productId, days, series);
+    }
+
+    private static boolean matches(DayRow row, String platform, String geohash) {
+        return (platform == null || platform.equals(row.platform()))
+                && (geohash == null || row.geohash().startsWith(geohash));
+    }
+
+    /**
+     * @param opening last day before the window, whose close counts as the window's first point;
+     *                null when the series starts inside the window
+     */
+    private PriceHistory.Series summarize(DayRow opening, List<DayRow> days, boolean daily, boolean intraday) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long sum = 0;
+        long points = 0;
+        if (opening != null) {
+            min = opening.close();
+            max = opening.close();
+            sum = opening.close();
+            points = 1;
+        }
+        List<PriceHistory.Day> dayList = daily ? new ArrayList<>(days.size()) : null;
+        for (DayRow day : days) {
+            min = Math.min(min, day.min());
+            max = Math.max(max, day.max());
+            sum += day.sum();
+            points += day.pointCount();
+            if (daily) {
+                dayList.add(new PriceHistory.Day(day.day(), rupees(day.open()), rupees(day.min()), rupees(day.max()),
+                        rupees(day.close()), day.pointCount(), intraday ? intraday(day) : null));
+            }
+        }
+        DayRow last = days.isEmpty() ? opening : days.get(days.size() - 1);
+        return new PriceHistory.Series(last.platform(), last.geohash(), rupees(min), rupees(max),
+                points == 0 ? 0 : Math.round((double) sum / points) / 100.0,
+                rupees(last.close()), last.closedAt(), points, dayList);
+    }
+
+    private List<PriceHistory.Point> intraday(DayRow day) {
+        PriceSeriesCodec.Points decoded = PriceSeriesCodec.decode(day.points());
+        long dayStart = day.day().atStartOfDay(zone).toEpochSecond();
+        List<PriceHistory.Point> points = new ArrayList<>(decoded.size());
+        for (int i = 0; i < decoded.size(); i++) {
+            points.add(new PriceHistory.Point(Instant.ofEpochSecond(dayStart + decoded.seconds()[i]),
+                    rupees(decoded.prices()[i])));
+        }
+        return points;
+    }
+
+    private static double rupees(long paise) {
+        return paise / 100.0;
+    }
+
+    /**
+     * Delete days past the retention period.
+     *
+     * @return the number of day rows deleted
+     */
+    public int purgeExpired() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDate cutoff = LocalDate.now(zone).minusDays(retentionDays);
+        Integer deleted = transactions.execute(status -> repository.deleteByDayBefore(cutoff));
+        return deleted != null ? deleted : 0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.smoothOrg.services.pricehistory;
+
+import java.time.Instant;
+
+/**
+ * A selling price seen for a listing, in paise.
+ *
+ * @param geohash cell of the listing, empty when it has no location
+ */
+public record PriceObservation(String productId,
+                               String platform,
+                               String geohash,
+                               Instant observedAt,
+                               long pricePaise) {
+}
@@ -0,0 +1,105 @@
+package com.smoothOrg.services.pricehistory;
+
+import java.util.Arrays;
+
+/**
+ * Compact encoding of one day of price points.
+ * <p>
+ * Points are stored column by column: the count, then every time (seconds since the start of
+ * the day) and then every price (paise). Each column holds its first value followed by the
+ * differences between neighbours as variable-length integers, zigzag encoded for prices since
+ * they move both ways. A typical point costs 2-4 bytes instead of the 16 of a raw
+ * (time, price) pair.
+ */
+public final class PriceSeriesCodec {
+
+    private static final int FORMAT = 1;
+
+    private PriceSeriesCodec() {
+    }
+
+    /**
+     * Decoded points of a day, in time order.
+     */
+    public record Points(int[] seconds, long[] prices) {
+
+        public int size() {
+            return seconds.length;
+        }
+    }
+
+    /**
+     * Encode the first {@code count} points; {@code seconds} must be in ascending order.
+     */
+    public static byte[] encode(int[] seconds, long[] prices, int count) {
+        // Worst case is 5 bytes per time and 10 per price
+        byte[] out = new byte[2 + 5 + count * 15];
+        int pos = writeVarint(out, 0, FORMAT);
+        pos = writeVarint(out, pos, count);
+        int previousSecond = 0;
+        for (int i = 0; i < count; i++) {
+            if (seconds[i] < previousSecond) {
+                throw new IllegalArgumentException("Points must be in time order");
+            }
+            pos = writeVarint(out, pos, seconds[i] - previousSecond);
+            previousSecond = seconds[i];
+        }
+        long previousPrice = 0;
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(out, pos, zigzag(prices[i] - previousPrice));
+            previousPrice = prices[i];
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    public static Points decode(byte[] data) {
+        int[] pos = {0};
+        long format = readVarint(data, pos);
+        if (format != FORMAT) {
+            throw new IllegalArgumentException("Unknown price series format " + format);
+        }
+        int count = (int) readVarint(data, pos);
+        int[] seconds = new int[count];
+        long[] prices = new long[count];
+        int second = 0;
+        for (int i = 0; i < count; i++) {
+            second += (int) readVarint(data, pos);
+            seconds[i] = second;
+        }
+        long price = 0;
+        for (int i = 0; i < count; i++) {
+            price += unzigzag(readVarint(data, pos));
+            prices[i] = price;
+        }
+        return new Points(seconds, prices);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed price series");
+    }
+}
@@ -0,0 +1,61 @@
+package com.smoothOrg.services.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smoothOrg.domain.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Revocation check for claim-based principals: confirms the user behind a token still exists
+ * under the same email. Answers are cached briefly per user id, so a deleted or renamed account
+ * stops authenticating within the TTL while most requests skip the database. On by default;
+ * disabling it trusts every verified token until it expires, up to the token lifetime.
+ */
+@Service
+public class ActiveUserCheck {
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final Cache<Long, String> activeEmails;
+
+    public ActiveUserCheck(UserRepository userRepository,
+                           @Value("${app.jwt.user-check.enabled:true}") boolean enabled,
+                           @Value("${app.jwt.user-check.ttl-seconds:30}") long ttlSeconds,
+                           @Value("${app.jwt.user-check.max-entries:10000}") long maxEntries) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.activeEmails = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Whether the principal's account is still active. Always true when the check is disabled.
+     */
+    public boolean isActive(AuthenticatedUser user) {
+        if (!enabled) {
+            return true;
+        }
+        String email = activeEmails.getIfPresent(user.id());
+        if (email == null) {
+            // Looked up outside the cache's compute lock, which would block other keys in the
+            // same bin for the whole query. Missing users are cached as "" so a revoked token stays cheap.
+            email = userRepository.findById(user.id())
+                    .map(found -> found.getEmail())
+                    .orElse("");
+            activeEmails.put(user.id(), email);
+        }
+        return email.equals(user.email());
+    }
+
+    /**
+     * Forget the cached answer for a user, e.g. after deleting the account or changing its email.
+     */
+    public void invalidate(Long userId) {
+        activeEmails.invalidate(userId);
+    }
+}
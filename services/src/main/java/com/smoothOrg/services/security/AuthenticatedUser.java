@@ -0,0 +1,33 @@
+package com.smoothOrg.services.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal built from verified token claims alone, so authenticated requests know the
+ * user id without a database lookup. It never carries a password.
+ */
+public record AuthenticatedUser(Long id, String email, List<GrantedAuthority> authorities) implements UserDetails {
+
+    public AuthenticatedUser {
+        authorities = List.copyOf(authorities);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -1,28 +1,78 @@
 package com.smoothOrg.services.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs.
+ * <p>
+ * The signing key and parser are built once. A token is parsed and its signature checked once;
+ * the verified claims are then cached under the SHA-256 of the token (never the token itself)
+ * until the token expires, so repeat requests with the same token skip verification.
+ * <p>
+ * Tokens issued for a known user id carry it in {@value #USER_ID_CLAIM} and the user's
+ * authorities in {@value #ROLES_CLAIM}, which is enough to build the principal without a lookup.
+ */
 @Service
 public class JwtService {
 
-    @Value("${app.jwt.secret}")
-    private String secret;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLES_CLAIM = "roles";
 
-    @Value("${app.jwt.expiration-ms}")
-    private long jwtExpiration;
+    private final long jwtExpiration;
+    private final SecretKey signInKey;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtService(@Value("${app.jwt.secret}") String secret,
+                      @Value("${app.jwt.expiration-ms}") long jwtExpiration,
+                      @Value("${app.jwt.cache.max-entries:10000}") long cacheMaxEntries) {
+        this.jwtExpiration = jwtExpiration;
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parser().verifyWith(signInKey).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return untilExpiry(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return untilExpiry(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
     /**
      * Extract username (email) from token
@@ -39,6 +89,25 @@ public class JwtService {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Verified claims of a token, from the cache when it was verified before.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, badly signed or expired
+     */
+    public Claims extractAllClaims(String token) {
+        String key = hash(token);
+        Claims cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            return cached;
+        }
+        // The parser rejects bad signatures and expired tokens
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(key, claims);
+        }
+        return claims;
+    }
+
     /**
      * Generate token for user
      */
@@ -53,6 +122,35 @@ public class JwtService {
         return buildToken(extraClaims, userDetails, jwtExpiration);
     }
 
+    /**
+     * Generate token carrying the user id and authorities as claims
+     */
+    public String generateToken(Long userId, UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userId);
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        return generateToken(claims, userDetails);
+    }
+
+    /**
+     * Principal described by verified claims, or null for tokens issued without a user id.
+     */
+    public AuthenticatedUser toPrincipal(Claims claims) {
+        Object userId = claims.get(USER_ID_CLAIM);
+        if (!(userId instanceof Number number) || claims.getSubject() == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = List.of();
+        if (claims.get(ROLES_CLAIM) instanceof List<?> roles) {
+            authorities = roles.stream()
+                    .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                    .toList();
+        }
+        return new AuthenticatedUser(number.longValue(), claims.getSubject(), authorities);
+    }
+
     /**
      * Build the JWT token
      */
@@ -67,7 +165,7 @@ public class JwtService {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey())
+                .signWith(signInKey)
                 .compact();
     }
 
@@ -75,41 +173,32 @@ public class JwtService {
      * Validate token
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(extractAllClaims(token), userDetails);
     }
 
     /**
-     * Check if token is expired
+     * Validate already verified claims against the user they name.
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject()) && !isExpired(claims);
     }
 
-    /**
-     * Extract expiration date
-     */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.before(new Date());
     }
 
-    /**
-     * Extract all claims
-     */
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private static long untilExpiry(Claims claims) {
+        long millis = claims.getExpiration().getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
     }
 
-    /**
-     * Get signing key
-     */
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
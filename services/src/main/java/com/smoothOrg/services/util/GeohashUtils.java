@@ -1,14 +1,53 @@
 package com.smoothOrg.services.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Utility class for converting latitude/longitude to geohash.
- * Using a simple geohash implementation.
+ * <p>
+ * Geohashes of up to 12 characters are handled as a {@code long}: the interleaved cell bits
+ * (longitude first, 5 bits per character) shifted left by 4, with the precision in the low
+ * 4 bits. Encoding quantises each axis once and interleaves the bits, so the {@code long}
+ * operations ({@link #encodeLong}, {@link #decodeLatitude}, {@link #prefix}, {@link #neighbor})
+ * allocate nothing; the string form is only built by {@link #toGeohashString}. The String
+ * methods are thin wrappers over the same code.
  */
 public class GeohashUtils {
 
     private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final char[] BASE32_CHARS = BASE32.toCharArray();
+    private static final byte[] BASE32_INDEX = new byte[128];
     private static final int[] BITS = {16, 8, 4, 2, 1};
 
+    /**
+     * Longest geohash that fits the {@code long} form (60 cell bits).
+     */
+    public static final int MAX_LONG_PRECISION = 12;
+
+    /**
+     * Returned by {@link #neighbor} when the neighbour would lie beyond a pole.
+     */
+    public static final long NO_NEIGHBOR = -1L;
+
+    // Bits per axis after quantisation; 2 x 30 covers the 60 bits of a 12-char geohash
+    private static final int AXIS_BITS = 30;
+    private static final double AXIS_CELLS = 1L << AXIS_BITS;
+    private static final long AXIS_MAX = (1L << AXIS_BITS) - 1;
+
+    // Neighbour offsets {dLat, dLon}, clockwise from north: N, NE, E, SE, S, SW, W, NW
+    private static final int[][] NEIGHBOR_OFFSETS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    static {
+        Arrays.fill(BASE32_INDEX, (byte) -1);
+        for (int i = 0; i < BASE32_CHARS.length; i++) {
+            BASE32_INDEX[BASE32_CHARS[i]] = (byte) i;
+            BASE32_INDEX[Character.toUpperCase(BASE32_CHARS[i])] = (byte) i;
+        }
+    }
+
     /**
      * Encode latitude and longitude into a geohash string.
      *
@@ -18,53 +57,398 @@ public class GeohashUtils {
      * @return the geohash string
      */
     public static String encode(double latitude, double longitude, int precision) {
-        double[] latRange = {-90.0, 90.0};
-        double[] lonRange = {-180.0, 180.0};
-        
-        StringBuilder geohash = new StringBuilder();
+        if (precision > MAX_LONG_PRECISION) {
+            return encodeBisecting(latitude, longitude, precision);
+        }
+        return toGeohashString(encodeLong(latitude, longitude, precision));
+    }
+
+    /**
+     * Encode with default precision of 7 characters (~150m area).
+     * Perfect for quick-commerce delivery zones.
+     */
+    public static String encode(double latitude, double longitude) {
+        return encode(latitude, longitude, 7);
+    }
+
+    // ---------------------------------------------------------------------
+    // long form
+    // ---------------------------------------------------------------------
+
+    /**
+     * Encode latitude and longitude into the {@code long} geohash form.
+     *
+     * @param precision geohash length, 1 to {@link #MAX_LONG_PRECISION}
+     */
+    public static long encodeLong(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        long latBits = quantize((latitude + 90.0) / 180.0);
+        long lonBits = quantize((longitude + 180.0) / 360.0);
+        long interleaved = (spread(lonBits) << 1) | spread(latBits);
+        int bitCount = precision * 5;
+        return (interleaved >>> (2 * AXIS_BITS - bitCount)) << 4 | precision;
+    }
+
+    /**
+     * Encode many points at once, e.g. a batch of ingested listings.
+     *
+     * @param latitudes  input latitudes
+     * @param longitudes input longitudes, same length
+     * @param precision  geohash length, 1 to {@link #MAX_LONG_PRECISION}
+     * @param hashes     output, at least as long as the inputs
+     */
+    public static void encodeLong(double[] latitudes, double[] longitudes, int precision, long[] hashes) {
+        if (longitudes.length != latitudes.length || hashes.length < latitudes.length) {
+            throw new IllegalArgumentException("Coordinate and output arrays must match in length");
+        }
+        for (int i = 0; i < latitudes.length; i++) {
+            hashes[i] = encodeLong(latitudes[i], longitudes[i], precision);
+        }
+    }
+
+    /**
+     * Decode many hashes to their cell centres.
+     *
+     * @param hashes     {@code long} geohashes
+     * @param latitudes  output latitudes, at least as long as {@code hashes}
+     * @param longitudes output longitudes, at least as long as {@code hashes}
+     */
+    public static void decode(long[] hashes, double[] latitudes, double[] longitudes) {
+        if (latitudes.length < hashes.length || longitudes.length < hashes.length) {
+            throw new IllegalArgumentException("Output arrays are shorter than the input");
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            latitudes[i] = decodeLatitude(hashes[i]);
+            longitudes[i] = decodeLongitude(hashes[i]);
+        }
+    }
+
+    /**
+     * Whether {@code geohash} is a geohash {@link #fromGeohashString} accepts: 1 to
+     * {@link #MAX_LONG_PRECISION} base-32 characters.
+     */
+    public static boolean isValid(String geohash) {
+        if (geohash == null || geohash.isEmpty() || geohash.length() > MAX_LONG_PRECISION) {
+            return false;
+        }
+        for (int i = 0; i < geohash.length(); i++) {
+            char c = geohash.charAt(i);
+            if (c >= 128 || BASE32_INDEX[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a geohash string of up to {@link #MAX_LONG_PRECISION} characters.
+     */
+    public static long fromGeohashString(String geohash) {
+        if (geohash == null || geohash.isEmpty()) {
+            throw new IllegalArgumentException("Geohash must not be empty");
+        }
+        checkPrecision(geohash.length());
+        long bits = 0;
+        for (int i = 0; i < geohash.length(); i++) {
+            bits = bits << 5 | charIndex(geohash, i);
+        }
+        return bits << 4 | geohash.length();
+    }
+
+    public static String toGeohashString(long hash) {
+        int precision = precision(hash);
+        long bits = hash >>> 4;
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32_CHARS[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public static int precision(long hash) {
+        return (int) (hash & 15);
+    }
+
+    /**
+     * Latitude of the cell centre.
+     */
+    public static double decodeLatitude(long hash) {
+        int latBitCount = precision(hash) * 5 / 2;
+        return -90.0 + (latIndex(hash) + 0.5) * 180.0 / (1L << latBitCount);
+    }
+
+    /**
+     * Longitude of the cell centre.
+     */
+    public static double decodeLongitude(long hash) {
+        int lonBitCount = (precision(hash) * 5 + 1) / 2;
+        return -180.0 + (lonIndex(hash) + 0.5) * 360.0 / (1L << lonBitCount);
+    }
+
+    /**
+     * The enclosing cell at a coarser precision.
+     */
+    public static long prefix(long hash, int precision) {
+        int current = precision(hash);
+        if (precision < 1 || precision > current) {
+            throw new IllegalArgumentException("Prefix precision must be between 1 and " + current);
+        }
+        return (hash >>> 4 >>> (5 * (current - precision))) << 4 | precision;
+    }
+
+    /**
+     * Whether {@code hash} lies inside the (same or coarser) cell {@code prefix}.
+     */
+    public static boolean hasPrefix(long hash, long prefix) {
+        int precision = precision(prefix);
+        return precision <= precision(hash) && prefix(hash, precision) == prefix;
+    }
+
+    /**
+     * The adjacent cell {@code latSteps} rows north and {@code lonSteps} columns east.
+     * Longitude wraps at the antimeridian.
+     *
+     * @return the neighbour, or {@link #NO_NEIGHBOR} if it would lie beyond a pole
+     */
+    public static long neighbor(long hash, int latSteps, int lonSteps) {
+        int precision = precision(hash);
+        int bitCount = precision * 5;
+        int latBitCount = bitCount / 2;
+        int lonBitCount = bitCount - latBitCount;
+
+        long lat = latIndex(hash) + latSteps;
+        if (lat < 0 || lat >= (1L << latBitCount)) {
+            return NO_NEIGHBOR;
+        }
+        long lon = (lonIndex(hash) + lonSteps) & ((1L << lonBitCount) - 1);
+
+        long interleaved = (spread(lon << (AXIS_BITS - lonBitCount)) << 1) | spread(lat << (AXIS_BITS - latBitCount));
+        return (interleaved >>> (2 * AXIS_BITS - bitCount)) << 4 | precision;
+    }
+
+    /**
+     * Write the up to 8 surrounding cells, clockwise from north, into {@code into}.
+     *
+     * @param into output array of length 8 or more
+     * @return the number of neighbours written (fewer than 8 next to a pole)
+     */
+    public static int neighbors(long hash, long[] into) {
+        int count = 0;
+        for (int[] offset : NEIGHBOR_OFFSETS) {
+            long neighbor = neighbor(hash, offset[0], offset[1]);
+            if (neighbor != NO_NEIGHBOR) {
+                into[count++] = neighbor;
+            }
+        }
+        return count;
+    }
+
+    // ---------------------------------------------------------------------
+    // String form
+    // ---------------------------------------------------------------------
+
+    /**
+     * Latitude/longitude bounds of a geohash cell.
+     */
+    public record BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+
+        public double centerLatitude() {
+            return (minLatitude + maxLatitude) / 2;
+        }
+
+        public double centerLongitude() {
+            return (minLongitude + maxLongitude) / 2;
+        }
+
+        public double latitudeSpan() {
+            return maxLatitude - minLatitude;
+        }
+
+        public double longitudeSpan() {
+            return maxLongitude - minLongitude;
+        }
+    }
+
+    /**
+     * Bounds of the cell a geohash names.
+     *
+     * @throws IllegalArgumentException if the geohash is empty or contains characters outside the geohash alphabet
+     */
+    public static BoundingBox boundingBox(String geohash) {
+        if (geohash == null || geohash.isEmpty()) {
+            throw new IllegalArgumentException("Geohash must not be empty");
+        }
+        double minLat = -90.0, maxLat = 90.0;
+        double minLon = -180.0, maxLon = 180.0;
         boolean isEven = true;
-        int bit = 0;
-        int ch = 0;
-
-        while (geohash.length() < precision) {
-            double mid;
-            if (isEven) {
-                mid = (lonRange[0] + lonRange[1]) / 2;
-                if (longitude > mid) {
-                    ch |= BITS[bit];
-                    lonRange[0] = mid;
-                } else {
-                    lonRange[1] = mid;
-                }
-            } else {
-                mid = (latRange[0] + latRange[1]) / 2;
-                if (latitude > mid) {
-                    ch |= BITS[bit];
-                    latRange[0] = mid;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int cd = charIndex(geohash, i);
+            for (int mask : BITS) {
+                if (isEven) {
+                    double mid = (minLon + maxLon) / 2;
+                    if ((cd & mask) != 0) minLon = mid; else maxLon = mid;
                 } else {
-                    latRange[1] = mid;
+                    double mid = (minLat + maxLat) / 2;
+                    if ((cd & mask) != 0) minLat = mid; else maxLat = mid;
                 }
+                isEven = !isEven;
             }
+        }
+        return new BoundingBox(minLat, maxLat, minLon, maxLon);
+    }
 
-            isEven = !isEven;
+    /**
+     * Decode a geohash to the centre of its cell.
+     *
+     * @return {@code {latitude, longitude}}
+     */
+    public static double[] decode(String geohash) {
+        BoundingBox box = boundingBox(geohash);
+        return new double[]{box.centerLatitude(), box.centerLongitude()};
+    }
 
-            if (bit < 4) {
-                bit++;
-            } else {
-                geohash.append(BASE32.charAt(ch));
-                bit = 0;
-                ch = 0;
+    /**
+     * The up to 8 cells surrounding a geohash, same precision, clockwise from north:
+     * N, NE, E, SE, S, SW, W, NW. Longitude wraps at the antimeridian; cells beyond
+     * a pole do not exist and are left out.
+     */
+    public static List<String> neighbors(String geohash) {
+        List<String> neighbors = new ArrayList<>(8);
+        if (geohash != null && geohash.length() <= MAX_LONG_PRECISION) {
+            long[] cells = new long[8];
+            int count = neighbors(fromGeohashString(geohash), cells);
+            for (int i = 0; i < count; i++) {
+                neighbors.add(toGeohashString(cells[i]));
             }
+            return neighbors;
         }
 
-        return geohash.toString();
+        BoundingBox box = boundingBox(geohash);
+        double lat = box.centerLatitude();
+        double lon = box.centerLongitude();
+        for (int[] offset : NEIGHBOR_OFFSETS) {
+            double neighborLat = lat + offset[0] * box.latitudeSpan();
+            if (neighborLat > 90.0 || neighborLat < -90.0) continue;
+            double neighborLon = lon + offset[1] * box.longitudeSpan();
+            if (neighborLon > 180.0) neighborLon -= 360.0;
+            if (neighborLon < -180.0) neighborLon += 360.0;
+            neighbors.add(encode(neighborLat, neighborLon, geohash.length()));
+        }
+        return neighbors;
     }
 
     /**
-     * Encode with default precision of 7 characters (~150m area).
-     * Perfect for quick-commerce delivery zones.
+     * The cell itself followed by its {@link #neighbors}: the 3x3 block around a user,
+     * which always contains every point within one cell size of them.
      */
-    public static String encode(double latitude, double longitude) {
-        return encode(latitude, longitude, 7);
+    public static List<String> withNeighbors(String geohash) {
+        List<String> cells = new ArrayList<>(9);
+        cells.add(geohash.toLowerCase(Locale.ROOT));
+        cells.addAll(neighbors(geohash));
+        return cells;
+    }
+
+    // ---------------------------------------------------------------------
+    // internals
+    // ---------------------------------------------------------------------
+
+    /**
+     * Cell index of a fraction in [0, 1] at {@link #AXIS_BITS} resolution. A point exactly on
+     * a cell edge goes to the lower cell, matching the bisection rule "bit set when above mid".
+     */
+    private static long quantize(double fraction) {
+        long index = (long) Math.ceil(fraction * AXIS_CELLS) - 1;
+        return index < 0 ? 0 : Math.min(index, AXIS_MAX);
+    }
+
+    private static long latIndex(long hash) {
+        int bitCount = precision(hash) * 5;
+        long interleaved = (hash >>> 4) << (2 * AXIS_BITS - bitCount);
+        return compact(interleaved) >>> (AXIS_BITS - bitCount / 2);
+    }
+
+    private static long lonIndex(long hash) {
+        int bitCount = precision(hash) * 5;
+        long interleaved = (hash >>> 4) << (2 * AXIS_BITS - bitCount);
+        return compact(interleaved >>> 1) >>> (AXIS_BITS - (bitCount + 1) / 2);
+    }
+
+    /**
+     * Spread the low 32 bits of {@code value} to the even bit positions.
+     */
+    private static long spread(long value) {
+        value &= 0x00000000FFFFFFFFL;
+        value = (value | (value << 16)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value << 8)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value << 2)) & 0x3333333333333333L;
+        value = (value | (value << 1)) & 0x5555555555555555L;
+        return value;
+    }
+
+    /**
+     * Inverse of {@link #spread}: gather the even bit positions into the low 32 bits.
+     */
+    private static long compact(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | (value >>> 1)) & 0x3333333333333333L;
+        value = (value | (value >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value >>> 4)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value >>> 8)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value >>> 16)) & 0x00000000FFFFFFFFL;
+        return value;
+    }
+
+    private static int charIndex(String geohash, int i) {
+        char c = geohash.charAt(i);
+        int index = c < 128 ? BASE32_INDEX[c] : -1;
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid geohash character '" + c + "' in " + geohash);
+        }
+        return index;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_LONG_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_LONG_PRECISION + ": " + precision);
+        }
+    }
+
+    /**
+     * Bit-by-bit encoding for precisions beyond the {@code long} form.
+     */
+    private static String encodeBisecting(double latitude, double longitude, int precision) {
+        double minLat = -90.0, maxLat = 90.0;
+        double minLon = -180.0, maxLon = 180.0;
+        char[] geohash = new char[precision];
+        boolean isEven = true;
+
+        for (int i = 0; i < precision; i++) {
+            int ch = 0;
+            for (int mask : BITS) {
+                if (isEven) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (longitude > mid) {
+                        ch |= mask;
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (latitude > mid) {
+                        ch |= mask;
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                isEven = !isEven;
+            }
+            geohash[i] = BASE32_CHARS[ch];
+        }
+        return new String(geohash);
     }
 }
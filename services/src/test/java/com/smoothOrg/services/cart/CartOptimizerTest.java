@@ -0,0 +1,144 @@
+package com.smoothOrg.services.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartOptimizerTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final CartOptimizer optimizer = new CartOptimizer();
+
+    @Test
+    void matchesBruteForceOnSmallCarts() {
+        for (int seed = 0; seed < 300; seed++) {
+            Random random = new Random(seed);
+            int platformCount = 1 + random.nextInt(4);
+            int itemCount = 1 + random.nextInt(7);
+            double[] prices = randomPrices(random, itemCount, platformCount, 0.15);
+            PlatformFeeSchedule fees = randomFees(random, platformCount);
+
+            List<Double> expected = bruteForce(prices, itemCount, fees);
+            List<CartOptimizer.Plan> plans = optimizer.optimize(prices, itemCount, fees, 3);
+
+            assertEquals(Math.min(3, Math.max(1, expected.size())), plans.size(), "plans, seed " + seed);
+            for (int rank = 0; rank < expected.size() && rank < plans.size(); rank++) {
+                CartOptimizer.Plan plan = plans.get(rank);
+                assertTrue(plan.exact(), "exact, seed " + seed);
+                assertEquals(expected.get(rank), plan.totalCost(), TOLERANCE, "rank " + rank + ", seed " + seed);
+                assertEquals(plan.totalCost(), cost(plan.assignment(), prices, itemCount, fees), TOLERANCE,
+                        "plan total, seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void staysWithinTimeBudgetAtPlatformCap() {
+        CartOptimizer budgeted = new CartOptimizer(50);
+        int itemCount = 60;
+        int platformCount = CartOptimizer.MAX_PLATFORMS;
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            double[] prices = randomPrices(random, itemCount, platformCount, 0);
+            // Large delivery fees and thresholds near a platform's share of the cart: the hard case
+            PlatformFeeSchedule fees = new PlatformFeeSchedule(platformCount);
+            for (int j = 0; j < platformCount; j++) {
+                fees.set(j, 40 + random.nextInt(60), 500 + random.nextInt(2500), 2 + j % 5, 1 + j % 4);
+            }
+
+            long start = System.nanoTime();
+            List<CartOptimizer.Plan> plans = budgeted.optimize(prices, itemCount, fees, 3);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // Budget plus headroom for a slow CI machine, still far below a request timeout
+            assertTrue(elapsedMs < 250, "took " + elapsedMs + " ms, seed " + seed);
+            assertFalse(plans.isEmpty());
+            assertEquals(plans.get(0).totalCost(), cost(plans.get(0).assignment(), prices, itemCount, fees), TOLERANCE);
+        }
+    }
+
+    private static double[] randomPrices(Random random, int itemCount, int platformCount, double missing) {
+        double[] prices = new double[itemCount * platformCount];
+        for (int i = 0; i < itemCount; i++) {
+            double base = 20 + random.nextInt(200);
+            for (int j = 0; j < platformCount; j++) {
+                prices[i * platformCount + j] = random.nextDouble() < missing
+                        ? Double.NaN
+                        : Math.round(base * (0.9 + random.nextDouble() * 0.2) * 100) / 100.0;
+            }
+        }
+        return prices;
+    }
+
+    private static PlatformFeeSchedule randomFees(Random random, int platformCount) {
+        PlatformFeeSchedule fees = new PlatformFeeSchedule(platformCount);
+        for (int j = 0; j < platformCount; j++) {
+            fees.set(j, 10 + random.nextInt(40), 100 + random.nextInt(400), random.nextInt(6), random.nextInt(4));
+        }
+        return fees;
+    }
+
+    /**
+     * Cheapest total per distinct platform set over every assignment, ascending.
+     */
+    private static List<Double> bruteForce(double[] prices, int itemCount, PlatformFeeSchedule fees) {
+        int platformCount = fees.platformCount();
+        Map<Integer, Double> bestPerMask = new HashMap<>();
+        int[] assignment = new int[itemCount];
+        enumerate(0, assignment, prices, itemCount, fees, bestPerMask);
+        List<Double> totals = new ArrayList<>(bestPerMask.values());
+        totals.sort(Double::compare);
+        return totals.size() > 3 ? totals.subList(0, 3) : totals;
+    }
+
+    private static void enumerate(int item, int[] assignment, double[] prices, int itemCount,
+                                  PlatformFeeSchedule fees, Map<Integer, Double> bestPerMask) {
+        int platformCount = fees.platformCount();
+        if (item == itemCount) {
+            int mask = 0;
+            for (int j : assignment) {
+                if (j >= 0) mask |= 1 << j;
+            }
+            bestPerMask.merge(mask, cost(assignment, prices, itemCount, fees), Math::min);
+            return;
+        }
+        boolean any = false;
+        for (int j = 0; j < platformCount; j++) {
+            if (Double.isNaN(prices[item * platformCount + j])) continue;
+            any = true;
+            assignment[item] = j;
+            enumerate(item + 1, assignment, prices, itemCount, fees, bestPerMask);
+        }
+        if (!any) {
+            assignment[item] = -1;
+            enumerate(item + 1, assignment, prices, itemCount, fees, bestPerMask);
+        }
+    }
+
+    private static double cost(int[] assignment, double[] prices, int itemCount, PlatformFeeSchedule fees) {
+        int platformCount = fees.platformCount();
+        double[] subtotal = new double[platformCount];
+        boolean[] used = new boolean[platformCount];
+        double total = 0;
+        for (int i = 0; i < itemCount; i++) {
+            int j = assignment[i];
+            if (j < 0) continue;
+            subtotal[j] += prices[i * platformCount + j];
+            used[j] = true;
+        }
+        for (int j = 0; j < platformCount; j++) {
+            if (!used[j]) continue;
+            total += subtotal[j] + fees.fixedFee(j) + fees.deliveryFeeFor(j, subtotal[j]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,97 @@
+package com.smoothOrg.services.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reindexes a real cluster's documents and searches them the way the application does. Runs
+ * only when {@code ELASTICSEARCH_URL} (e.g. {@code http://localhost:9200}) points at a cluster.
+ */
+@EnabledIfEnvironmentVariable(named = "ELASTICSEARCH_URL", matches = ".+")
+class ReindexRoutingIntegrationTest {
+
+    private static final String INDEX_BODY = "{\"settings\":{\"number_of_shards\":5,\"number_of_replicas\":0}}";
+
+    private final GeoRouting geoRouting = new GeoRouting(4);
+    private final String alias = "it_products_" + UUID.randomUUID().toString().substring(0, 8);
+    private RestClient restClient;
+    private ElasticsearchClient client;
+    private ReindexService reindexService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        restClient = RestClient.builder(HttpHost.create(System.getenv("ELASTICSEARCH_URL"))).build();
+        client = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        reindexService = new ReindexService(client, new ElasticsearchMetrics(new SimpleMeterRegistry()),
+                mock(CachingElasticsearchService.class), geoRouting, 0, -1, 1000, 100, 60_000);
+        client.indices().create(c -> c.index(alias + "_v1")
+                .settings(s -> s.numberOfShards("5").numberOfReplicas("0"))
+                .aliases(alias, a -> a));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reindexService.close();
+        client.indices().delete(d -> d.index(alias + "_v1", alias + "_v2").ignoreUnavailable(true));
+        restClient.close();
+    }
+
+    @Test
+    void unroutedDocumentIsFoundByRoutedSearchAfterReindex() throws Exception {
+        index("unrouted", "ttncyvn", null);
+        // Written at a finer precision than the configured one
+        index("too-fine", "ttncyvn", "ttncy");
+
+        ReindexProgress progress = reindexService.start(alias, INDEX_BODY, null, null);
+        progress = awaitFinished(progress.jobId());
+        assertEquals(ReindexProgress.Phase.DONE, progress.phase(), progress.error());
+
+        String routing = geoRouting.of("ttncyvn");
+        for (String id : List.of("unrouted", "too-fine")) {
+            List<Hit<JsonData>> hits = client.search(s -> s.index(alias).routing(routing)
+                    .query(q -> q.ids(i -> i.values(id))), JsonData.class).hits().hits();
+            assertEquals(1, hits.size(), id + " found with routing " + routing);
+            assertEquals(routing, hits.get(0).routing());
+        }
+    }
+
+    private void index(String id, String geohash, String routing) throws IOException {
+        client.index(i -> i.index(alias).id(id).routing(routing).refresh(Refresh.True)
+                .document(Map.of("product_name", id, "geohash", geohash,
+                        ReindexService.INGESTED_AT, Instant.now().toString())));
+    }
+
+    private ReindexProgress awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+        while (System.nanoTime() < deadline) {
+            ReindexProgress progress = reindexService.progress(jobId);
+            if (progress.phase() == ReindexProgress.Phase.DONE || progress.phase() == ReindexProgress.Phase.FAILED) {
+                return progress;
+            }
+            Thread.sleep(100);
+        }
+        return fail("reindex did not finish");
+    }
+}
@@ -0,0 +1,139 @@
+package com.smoothOrg.services.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.DateRangeQuery;
+import co.elastic.clients.elasticsearch.core.ReindexRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.endpoints.BooleanEndpoint;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+class ReindexServiceTest {
+
+    private static final long MARGIN_MS = 60_000;
+
+    /**
+     * Canned cluster answers by endpoint; exists checks answer "alias yes, next index no".
+     */
+    private static final Map<String, String> RESPONSES = Map.of(
+            "es/indices.get_alias", "{\"products_v1\":{\"aliases\":{\"products\":{}}}}",
+            "es/indices.create", "{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"products_v2\"}",
+            "es/indices.get_settings",
+            "{\"products_v2\":{\"settings\":{\"index\":{\"number_of_replicas\":\"1\",\"refresh_interval\":\"1s\"}}}}",
+            "es/indices.put_settings", "{\"acknowledged\":true}",
+            "es/reindex", "{\"task\":\"node:1\"}",
+            "es/tasks.get", "{\"completed\":true,\"task\":{\"node\":\"node\",\"id\":1,\"type\":\"transport\","
+                    + "\"action\":\"indices:data/write/reindex\",\"start_time_in_millis\":0,"
+                    + "\"running_time_in_nanos\":0,\"cancellable\":true,\"headers\":{}},"
+                    + "\"response\":{\"total\":1,\"created\":1,\"updated\":0,\"version_conflicts\":0,"
+                    + "\"batches\":1,\"failures\":[]}}",
+            "es/indices.refresh", "{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}",
+            "es/indices.update_aliases", "{\"acknowledged\":true}");
+
+    private final List<ReindexRequest> reindexRequests = new CopyOnWriteArrayList<>();
+
+    @Test
+    void bothPassesRouteByGeohashAndCatchUpOnIngestionTime() throws Exception {
+        ReindexService service = new ReindexService(new ElasticsearchClient(new StubTransport()),
+                new ElasticsearchMetrics(new SimpleMeterRegistry()), mock(CachingElasticsearchService.class),
+                new GeoRouting(4), 0, -1, 1000, 1, MARGIN_MS);
+        Instant before = Instant.now();
+
+        ReindexProgress progress = service.start("products", "{}", null, null);
+        progress = awaitFinished(service, progress.jobId());
+
+        assertEquals(ReindexProgress.Phase.DONE, progress.phase(), progress.error());
+        assertEquals(2, reindexRequests.size());
+        for (ReindexRequest request : reindexRequests) {
+            assertEquals("products_v2", request.dest().index());
+            assertEquals(GeoRouting.REINDEX_SCRIPT, request.script().source());
+            assertEquals(4, request.script().params().get("precision").to(Integer.class));
+        }
+        assertNull(reindexRequests.get(0).source().query());
+        DateRangeQuery since = reindexRequests.get(1).source().query().range().date();
+        assertEquals(ReindexService.INGESTED_AT, since.field());
+        Instant gte = Instant.parse(since.gte());
+        assertTrue(!gte.isBefore(before.minusMillis(MARGIN_MS)) && gte.isBefore(before.minusMillis(MARGIN_MS - 5_000)),
+                "catch-up starts at the copy start less the margin: " + gte);
+        service.close();
+    }
+
+    private static ReindexProgress awaitFinished(ReindexService service, String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            ReindexProgress progress = service.progress(jobId);
+            assertNotNull(progress);
+            if (progress.phase() == ReindexProgress.Phase.DONE || progress.phase() == ReindexProgress.Phase.FAILED) {
+                return progress;
+            }
+            Thread.sleep(5);
+        }
+        return fail("reindex did not finish");
+    }
+
+    private final class StubTransport implements ElasticsearchTransport {
+
+        private final JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+                                                                      Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                      TransportOptions options) throws IOException {
+            if (request instanceof ReindexRequest reindex) {
+                reindexRequests.add(reindex);
+            }
+            if (endpoint instanceof BooleanEndpoint) {
+                return (ResponseT) new BooleanResponse(endpoint.id().equals("es/indices.exists_alias"));
+            }
+            String json = RESPONSES.get(endpoint.id());
+            if (json == null) {
+                throw new IOException("No canned response for " + endpoint.id());
+            }
+            return ((JsonEndpoint<RequestT, ResponseT, ErrorT>) endpoint).responseDeserializer()
+                    .deserialize(mapper.jsonProvider().createParser(new StringReader(json)), mapper);
+        }
+
+        @Override
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(
+                RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return mapper;
+        }
+
+        @Override
+        public TransportOptions options() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
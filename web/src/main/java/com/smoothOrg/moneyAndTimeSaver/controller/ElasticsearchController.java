@@ -1,6 +1,12 @@
 package com.smoothOrg.moneyAndTimeSaver.controller;
 
+import com.smoothOrg.services.elastic.CachingElasticsearchService;
 import com.smoothOrg.services.elastic.ElasticsearchService;
+import com.smoothOrg.services.elastic.IndexLayout;
+import com.smoothOrg.services.elastic.ReindexProgress;
+import com.smoothOrg.services.elastic.ReindexService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
@@ -12,9 +18,20 @@ import java.util.Map;
 public class ElasticsearchController {
 
     private final ElasticsearchService elasticsearchService;
+    private final CachingElasticsearchService searchCache;
+    private final ReindexService reindexService;
 
-    public ElasticsearchController(ElasticsearchService elasticsearchService) {
+    public ElasticsearchController(ElasticsearchService elasticsearchService,
+                                   CachingElasticsearchService searchCache,
+                                   ReindexService reindexService) {
         this.elasticsearchService = elasticsearchService;
+        this.searchCache = searchCache;
+        this.reindexService = reindexService;
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getSearchCacheStats() {
+        return searchCache.getStats();
     }
 
     @GetMapping("/indices")
@@ -22,14 +39,64 @@ public class ElasticsearchController {
         return elasticsearchService.getAllIndices();
     }
 
+    /**
+     * Create an index sharded for geohash routing; the mapping is applied separately.
+     */
+    @PutMapping("/indices/{index}")
+    public boolean createIndex(@PathVariable String index,
+                               @RequestParam(defaultValue = "1") int shards,
+                               @RequestParam(defaultValue = "1") int replicas,
+                               @RequestParam(defaultValue = "1") int routingPartitionSize,
+                               @RequestParam(defaultValue = "false") boolean routingRequired) throws IOException {
+        return elasticsearchService.createIndex(index, new IndexLayout(shards, replicas, routingPartitionSize, routingRequired));
+    }
+
+    /**
+     * Rebuild the index behind an alias from a new index definition (the body of a create index
+     * request) and switch the alias once it is copied. Poll the returned job for progress.
+     */
+    @PostMapping("/aliases/{alias}/reindex")
+    public ResponseEntity<ReindexProgress> reindex(@PathVariable String alias,
+                                                   @RequestBody String definition,
+                                                   @RequestParam(required = false) Integer slices,
+                                                   @RequestParam(required = false) Float requestsPerSecond) throws IOException {
+        return ResponseEntity.accepted().body(reindexService.start(alias, definition, slices, requestsPerSecond));
+    }
+
+    @GetMapping("/reindex")
+    public List<ReindexProgress> getReindexJobs() {
+        return reindexService.jobs();
+    }
+
+    @GetMapping("/reindex/{jobId}")
+    public ResponseEntity<ReindexProgress> getReindexProgress(@PathVariable String jobId) {
+        ReindexProgress progress = reindexService.progress(jobId);
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Change a running reindex's documents per second (-1 removes the limit).
+     */
+    @PutMapping("/reindex/{jobId}/throttle")
+    public ResponseEntity<ReindexProgress> rethrottleReindex(@PathVariable String jobId,
+                                                             @RequestParam float requestsPerSecond) throws IOException {
+        ReindexProgress progress = reindexService.rethrottle(jobId, requestsPerSecond);
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/indices/{index}/mapping")
     public String getMapping(@PathVariable String index) throws IOException {
         return elasticsearchService.getMapping(index);
     }
 
+    /**
+     * Dump the whole index as NDJSON, streamed straight to the response.
+     */
     @GetMapping("/indices/{index}/documents")
-    public List<String> getDocuments(@PathVariable String index) throws IOException {
-        return elasticsearchService.getAllDocuments(index);
+    public void exportDocuments(@PathVariable String index, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        elasticsearchService.exportDocuments(index, response.getOutputStream());
     }
 
     @GetMapping("/indices/{index}/documents/{id}")
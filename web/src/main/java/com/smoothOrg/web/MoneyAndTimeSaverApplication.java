@@ -3,9 +3,12 @@ package com.smoothOrg.web;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchRestClientAutoConfiguration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
-@SpringBootApplication(scanBasePackages = "com.smoothOrg")
+// ElasticsearchConfig builds the RestClient and its Sniffer; Boot's own would sniff whenever the
+// sniffer jar is on the classpath, ignoring elasticsearch.sniff.enabled
+@SpringBootApplication(scanBasePackages = "com.smoothOrg", exclude = ElasticsearchRestClientAutoConfiguration.class)
 @EnableJpaRepositories(basePackages = "com.smoothOrg.domain.repository")
 @EntityScan(basePackages = "com.smoothOrg.domain.entity")
 public class MoneyAndTimeSaverApplication {
@@ -1,5 +1,6 @@
 package com.smoothOrg.web.config;
 
+import com.smoothOrg.services.cart.PlatformFeeSchedule;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
@@ -68,6 +69,18 @@ public class PlatformFeesConfig {
         return platforms.getOrDefault(platform.toLowerCase(), new PlatformFee());
     }
 
+    /**
+     * Fee table indexed by platform ordinal, for the cart pricing core
+     */
+    public PlatformFeeSchedule toFeeSchedule(String[] platformNames) {
+        PlatformFeeSchedule schedule = new PlatformFeeSchedule(platformNames.length);
+        for (int p = 0; p < platformNames.length; p++) {
+            PlatformFee fee = getFeeForPlatform(platformNames[p]);
+            schedule.set(p, fee.getDeliveryFee(), fee.getFreeDeliveryThreshold(), fee.getHandlingCharge(), fee.getPlatformFee());
+        }
+        return schedule;
+    }
+
     /**
      * Update platform fees from external API
      * Call this method when external API provides updated fee data
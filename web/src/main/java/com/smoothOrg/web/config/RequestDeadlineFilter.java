@@ -0,0 +1,57 @@
+package com.smoothOrg.web.config;
+
+import com.smoothOrg.services.elastic.RequestDeadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the request's deadline when it arrives, so the Elasticsearch calls it makes share one
+ * {@code app.search.resilience.deadline-ms} budget. Clients may shorten it with
+ * {@value #TIMEOUT_HEADER} (milliseconds) but not extend it.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final long deadlineMs;
+
+    public RequestDeadlineFilter(@Value("${app.search.resilience.deadline-ms:2000}") long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long requestedMs = parseTimeout(request.getHeader(TIMEOUT_HEADER));
+        long timeoutMs = requestedMs > 0 ? Math.min(requestedMs, deadlineMs) : deadlineMs;
+        RequestDeadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private static long parseTimeout(String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.smoothOrg.web.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnJava;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+/**
+ * Opt-in virtual-thread request mode, switched on with {@code app.virtual-threads.enabled}.
+ * Tomcat then runs each request on its own virtual thread, and {@code applicationTaskExecutor}
+ * (cart pricing) starts one per task, so blocking JPA and Elasticsearch calls park instead of
+ * holding a platform thread. The Hikari pool, not the thread count, then bounds database work.
+ * <p>
+ * Needs a Java 21+ runtime. On older runtimes the switch is logged and ignored, and requests
+ * stay on Tomcat's platform thread pool.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnJava(JavaVersion.TWENTY_ONE)
+    static class Enabled {
+
+        @Bean
+        public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+            return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadTaskExecutor("http-vt-"));
+        }
+
+        @Bean(name = "applicationTaskExecutor")
+        public SimpleAsyncTaskExecutor applicationTaskExecutor() {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("task-vt-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnJava(range = ConditionalOnJava.Range.OLDER_THAN, value = JavaVersion.TWENTY_ONE)
+    static class Unsupported {
+
+        private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+        Unsupported() {
+            log.warn("app.virtual-threads.enabled is set but Java {} has no virtual threads; "
+                    + "requests stay on platform threads (needs Java 21+)", Runtime.version().feature());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.smoothOrg.web.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnJava;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Reports virtual threads pinned to their carrier, which happens when a thread blocks inside a
+ * {@code synchronized} block or native frame and stops other requests from using the carrier.
+ * <p>
+ * Active only in {@link VirtualThreadConfig}'s virtual mode (Java 21+). Streams the JFR
+ * {@code jdk.VirtualThreadPinned} event for pins longer than
+ * {@code app.virtual-threads.pinned-threshold-ms}, counts them in
+ * {@code jvm.threads.virtual.pinned} tagged with the first application frame, and logs the
+ * stack so the offending lock can be found.
+ */
+@Component
+@ConditionalOnJava(JavaVersion.TWENTY_ONE)
+@ConditionalOnExpression("${app.virtual-threads.enabled:false} and ${app.virtual-threads.pinning-monitor.enabled:true}")
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.smoothOrg.";
+
+    private final MeterRegistry meterRegistry;
+    private final RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${app.virtual-threads.pinned-threshold-ms:20}") long thresholdMs) {
+        this.meterRegistry = meterRegistry;
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String site = applicationFrame(stackTrace);
+        Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .tag("site", site)
+                .register(meterRegistry)
+                .increment();
+        if (log.isWarnEnabled()) {
+            log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), site, format(stackTrace));
+        }
+    }
+
+    /**
+     * First frame in this codebase, which names the lock holder better than the JDK frame
+     * that actually parked.
+     */
+    private static String applicationFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(APPLICATION_PACKAGE)) {
+                return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+            }
+        }
+        return "other";
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder frames = new StringBuilder();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            frames.append("\n\tat ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return frames.toString();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -1,200 +1,279 @@
 package com.smoothOrg.web.controller;
 
+import com.smoothOrg.services.cart.CartMetrics;
+import com.smoothOrg.services.cart.CartOptimizer;
+import com.smoothOrg.services.cart.CartPricingModel;
+import com.smoothOrg.services.cart.InvalidCartException;
+import com.smoothOrg.services.cart.PlatformFeeSchedule;
 import com.smoothOrg.web.config.PlatformFeesConfig;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
 
+    // Upper bound on requested alternative combos; each one is another platform subset to solve
+    private static final int MAX_ALTERNATIVES = 5;
+
     private final PlatformFeesConfig platformFeesConfig;
+    private final CartOptimizer cartOptimizer;
+    private final CartMetrics cartMetrics;
 
-    public CartController(PlatformFeesConfig platformFeesConfig) {
+    public CartController(PlatformFeesConfig platformFeesConfig, CartOptimizer cartOptimizer, CartMetrics cartMetrics) {
         this.platformFeesConfig = platformFeesConfig;
+        this.cartOptimizer = cartOptimizer;
+        this.cartMetrics = cartMetrics;
     }
 
     @PostMapping("/calculate")
     public ResponseEntity<CartCalculationResponse> calculateCart(@RequestBody CartCalculationRequest request) {
+        return ResponseEntity.ok(cartMetrics.timeCalculation("cart", () -> calculate(request)));
+    }
+
+    private CartCalculationResponse calculate(CartCalculationRequest request) {
         List<Map<String, Object>> calculations = new ArrayList<>();
 
-        Set<String> allPlatforms = request.items.stream()
-                .flatMap(item -> ((List<Map<String, Object>>) item.get("platforms")).stream())
-                .map(p -> (String) p.get("platform"))
-                .collect(Collectors.toSet());
+        CartPricingModel model = CartPricingModel.fromProducts(request.items, quantitiesOf(request));
+        if (model.platformCount() > CartOptimizer.MAX_PLATFORMS) {
+            throw new InvalidCartException("A cart can compare at most " + CartOptimizer.MAX_PLATFORMS
+                    + " platforms, got " + model.platformCount());
+        }
+        PlatformFeeSchedule fees = platformFeesConfig.toFeeSchedule(model.platforms());
+        cartMetrics.recordCart("cart", model);
 
         // Single platform combos
-        for (String platform : allPlatforms) {
-            PlatformCalculation calc = calculateSinglePlatformCombo(platform, request.items);
+        for (int platform = 0; platform < model.platformCount(); platform++) {
+            PlatformCalculation calc = calculateSinglePlatformCombo(platform, model, fees);
             calculations.add(calc.toMap());
         }
 
-        // Optimal combo
-        PlatformCalculation optimalCombo = calculateOptimalCombo(request.items);
-        calculations.add(optimalCombo.toMap());
+        // Optimal combo (plus alternatives when requested)
+        int alternatives = request.alternatives != null ? Math.min(MAX_ALTERNATIVES, Math.max(0, request.alternatives)) : 0;
+        for (PlatformCalculation combo : calculateOptimalCombos(model, fees, alternatives + 1)) {
+            calculations.add(combo.toMap());
+        }
 
         calculations.sort(Comparator.comparingDouble(c -> (Double) c.get("totalCost")));
-        return ResponseEntity.ok(new CartCalculationResponse(calculations));
+        return new CartCalculationResponse(calculations);
     }
 
-    private PlatformCalculation calculateSinglePlatformCombo(String platform, List<Map<String, Object>> items) {
-        PlatformCalculation calc = new PlatformCalculation(platform);
+    /**
+     * Units per item; missing entries default to one.
+     */
+    private int[] quantitiesOf(CartCalculationRequest request) {
+        int[] quantities = new int[request.items.size()];
+        for (int i = 0; i < quantities.length; i++) {
+            Integer quantity = request.quantities != null && i < request.quantities.size() ? request.quantities.get(i) : null;
+            quantities[i] = quantity != null ? quantity : 1;
+        }
+        return quantities;
+    }
 
-        for (Map<String, Object> item : items) {
-            List<Map<String, Object>> platformsList = (List<Map<String, Object>>) item.get("platforms");
-            Optional<Map<String, Object>> platformData = platformsList.stream()
-                    .filter(p -> platform.equals(p.get("platform")))
-                    .findFirst();
+    private PlatformCalculation calculateSinglePlatformCombo(int platform, CartPricingModel model, PlatformFeeSchedule fees) {
+        PlatformCalculation calc = new PlatformCalculation(model.platform(platform), model);
+        calc.comboPlatform = platform;
 
-            if (platformData.isPresent() && (Boolean) platformData.get().getOrDefault("availability", false)) {
-                double price = ((Number) platformData.get().get("selling_price")).doubleValue();
-                calc.addItem((String) item.get("product_name"), platform, price, platformData.get(), false);
+        for (int item = 0; item < model.itemCount(); item++) {
+            if (model.isAvailable(item, platform)) {
+                calc.addItem(item, platform, false);
             } else {
-                Map<String, Object> cheapest = findCheapestAvailable(item);
-                if (cheapest != null) {
-                    String fallbackPlatform = (String) cheapest.get("platform");
-                    double price = ((Number) cheapest.get("selling_price")).doubleValue();
-                    calc.addItem((String) item.get("product_name"), fallbackPlatform, price, cheapest, true);
+                int cheapest = model.cheapestPlatform(item);
+                if (cheapest >= 0) {
+                    calc.addItem(item, cheapest, true);
                 } else {
-                    calc.addUnavailableItem((String) item.get("product_name"));
+                    calc.addUnavailableItem(item);
                 }
             }
         }
 
-        calculateAllFees(calc);
+        calc.applyFees(fees);
         return calc;
     }
 
-    private PlatformCalculation calculateOptimalCombo(List<Map<String, Object>> items) {
-        PlatformCalculation calc = new PlatformCalculation("🎯 Best Combo");
-
-        for (Map<String, Object> item : items) {
-            Map<String, Object> cheapest = findCheapestAvailable(item);
-            if (cheapest != null) {
-                String platform = (String) cheapest.get("platform");
-                double price = ((Number) cheapest.get("selling_price")).doubleValue();
-                calc.addItem((String) item.get("product_name"), platform, price, cheapest, false);
-            } else {
-                calc.addUnavailableItem((String) item.get("product_name"));
+    /**
+     * Fee-aware optimal combos: the cheapest item-to-platform assignment with delivery
+     * thresholds, handling and platform fees included, followed by the next best platform sets.
+     */
+    private List<PlatformCalculation> calculateOptimalCombos(CartPricingModel model, PlatformFeeSchedule fees, int topK) {
+        List<PlatformCalculation> combos = new ArrayList<>();
+        Timer.Sample sample = cartMetrics.startOptimizer();
+        List<CartOptimizer.Plan> plans = cartOptimizer.optimize(model.lineTotalMatrix(), model.itemCount(), fees, topK);
+        cartMetrics.stopOptimizer(sample, plans.isEmpty() || plans.get(0).exact());
+        for (int rank = 0; rank < plans.size(); rank++) {
+            CartOptimizer.Plan plan = plans.get(rank);
+            int[] assignment = plan.assignment();
+            // A plan the optimizer ran out of time on is the cheapest it found, not proven the cheapest
+            String name = rank == 0 ? (plan.exact() ? "🎯 Best Combo" : "🎯 Best Combo Found") : "Alternative Combo #" + rank;
+            PlatformCalculation calc = new PlatformCalculation(name, model);
+            calc.exact = plan.exact();
+            for (int item = 0; item < model.itemCount(); item++) {
+                if (assignment[item] < 0) {
+                    calc.addUnavailableItem(item);
+                } else {
+                    calc.addItem(item, assignment[item], false);
+                }
             }
+            calc.applyFees(fees);
+            combos.add(calc);
         }
-
-        calculateAllFees(calc);
-        return calc;
-    }
-
-    private void calculateAllFees(PlatformCalculation calc) {
-        Map<String, Double> deliveryFees = new HashMap<>();
-        Map<String, Double> handlingFees = new HashMap<>();
-        Map<String, Double> platformFees = new HashMap<>();
-
-        for (String usedPlatform : calc.getUsedPlatforms()) {
-            PlatformFeesConfig.PlatformFee fee = platformFeesConfig.getFeeForPlatform(usedPlatform);
-            double platformSubtotal = calc.getSubtotalForPlatform(usedPlatform);
-
-            double deliveryFee = platformSubtotal >= fee.getFreeDeliveryThreshold() ? 0 : fee.getDeliveryFee();
-            deliveryFees.put(usedPlatform, deliveryFee);
-            handlingFees.put(usedPlatform, fee.getHandlingCharge());
-            platformFees.put(usedPlatform, fee.getPlatformFee());
-        }
-
-        calc.setFees(deliveryFees, handlingFees, platformFees);
+        return combos;
     }
 
-    private Map<String, Object> findCheapestAvailable(Map<String, Object> item) {
-        List<Map<String, Object>> platforms = (List<Map<String, Object>>) item.get("platforms");
-        return platforms.stream()
-                .filter(p -> (Boolean) p.getOrDefault("availability", false))
-                .min(Comparator.comparingDouble(p -> ((Number) p.get("selling_price")).doubleValue()))
-                .orElse(null);
-    }
-
-    public record CartCalculationRequest(List<Map<String, Object>> items) {}
+    /**
+     * @param quantities units per item, parallel to {@code items}; defaults to one each
+     * @param alternatives next best combos to return besides the best one, at most 5
+     */
+    public record CartCalculationRequest(List<Map<String, Object>> items, List<Integer> quantities, Integer alternatives) {}
     public record CartCalculationResponse(List<Map<String, Object>> calculations) {}
 
+    /**
+     * Totals are kept in primitive arrays indexed by platform ordinal; per-item maps are only
+     * built when the response is rendered.
+     */
     static class PlatformCalculation {
-        String platform;
+        private static final int UNAVAILABLE = -1;
+
+        final String platform;
+        final CartPricingModel model;
+        final int[] sources;
+        final boolean[] fallbacks;
+        final double[] platformSubtotals;
+        final int[] platformItemCounts;
+        final double[] deliveryFees;
+        final double[] handlingFees;
+        final double[] platformFees;
         double subtotal = 0;
-        Map<String, Double> deliveryFees = new HashMap<>();
-        Map<String, Double> handlingFees = new HashMap<>();
-        Map<String, Double> platformFees = new HashMap<>();
         double totalCost = 0;
         int availableItems = 0;
         int unavailableItems = 0;
-        List<Map<String, Object>> items = new ArrayList<>();
-        Map<String, Double> platformSubtotals = new HashMap<>();
+        // Set on optimizer combos only
+        Boolean exact;
+        // Ordinal of a single-platform combo's platform, -1 for optimizer combos
+        int comboPlatform = -1;
 
-        public PlatformCalculation(String platform) {
+        PlatformCalculation(String platform, CartPricingModel model) {
             this.platform = platform;
+            this.model = model;
+            this.sources = new int[model.itemCount()];
+            this.fallbacks = new boolean[model.itemCount()];
+            this.platformSubtotals = new double[model.platformCount()];
+            this.platformItemCounts = new int[model.platformCount()];
+            this.deliveryFees = new double[model.platformCount()];
+            this.handlingFees = new double[model.platformCount()];
+            this.platformFees = new double[model.platformCount()];
         }
 
-        public void addItem(String name, String sourcePlatform, double price, Map<String, Object> data, boolean isFallback) {
+        void addItem(int item, int sourcePlatform, boolean isFallback) {
+            double price = model.lineTotal(item, sourcePlatform);
             subtotal += price;
             availableItems++;
-            platformSubtotals.merge(sourcePlatform, price, Double::sum);
-            
-            Map<String, Object> itemMap = new HashMap<>();
-            itemMap.put("name", name);
-            itemMap.put("source", sourcePlatform);
-            itemMap.put("price", price);
-            itemMap.put("available", true);
-            itemMap.put("isFallback", isFallback);
-            itemMap.put("data", data);
-            items.add(itemMap);
+            platformSubtotals[sourcePlatform] += price;
+            platformItemCounts[sourcePlatform]++;
+            sources[item] = sourcePlatform;
+            fallbacks[item] = isFallback;
         }
 
-        public void addUnavailableItem(String name) {
+        void addUnavailableItem(int item) {
             unavailableItems++;
-            Map<String, Object> itemMap = new HashMap<>();
-            itemMap.put("name", name);
-            itemMap.put("available", false);
-            items.add(itemMap);
+            sources[item] = UNAVAILABLE;
         }
 
-        public Set<String> getUsedPlatforms() {
-            return platformSubtotals.keySet();
+        boolean isUsed(int sourcePlatform) {
+            return platformItemCounts[sourcePlatform] > 0;
+        }
+
+        void applyFees(PlatformFeeSchedule fees) {
+            double totalFees = 0;
+            for (int p = 0; p < platformSubtotals.length; p++) {
+                if (!isUsed(p)) continue;
+                deliveryFees[p] = fees.deliveryFeeFor(p, platformSubtotals[p]);
+                handlingFees[p] = fees.handlingCharge(p);
+                platformFees[p] = fees.platformFee(p);
+                totalFees += deliveryFees[p] + handlingFees[p] + platformFees[p];
+            }
+            this.totalCost = subtotal + totalFees;
         }
 
-        public double getSubtotalForPlatform(String platformName) {
-            return platformSubtotals.getOrDefault(platformName, 0.0);
+        private Map<String, Double> breakdown(double[] perPlatform) {
+            Map<String, Double> result = new HashMap<>();
+            for (int p = 0; p < perPlatform.length; p++) {
+                if (isUsed(p)) result.put(model.platform(p), perPlatform[p]);
+            }
+            return result;
         }
 
-        public void setFees(Map<String, Double> deliveryFeesMap, Map<String, Double> handlingFeesMap, Map<String, Double> platformFeesMap) {
-            this.deliveryFees = deliveryFeesMap;
-            this.handlingFees = handlingFeesMap;
-            this.platformFees = platformFeesMap;
-            
-            double totalDelivery = deliveryFeesMap.values().stream().mapToDouble(Double::doubleValue).sum();
-            double totalHandling = handlingFeesMap.values().stream().mapToDouble(Double::doubleValue).sum();
-            double totalPlatformFee = platformFeesMap.values().stream().mapToDouble(Double::doubleValue).sum();
-            
-            this.totalCost = subtotal + totalDelivery + totalHandling + totalPlatformFee;
+        private static double sum(double[] values) {
+            double total = 0;
+            for (double value : values) total += value;
+            return total;
+        }
+
+        /**
+         * For an item no platform can supply in full: the platforms that list it in stock but
+         * short of the quantity, with their inventory.
+         */
+        private void putStockLimits(Map<String, Object> itemMap, int item) {
+            Map<String, Long> inventory = new HashMap<>();
+            for (int p = 0; p < model.platformCount(); p++) {
+                if (model.isStockLimited(item, p)) inventory.put(model.platform(p), model.inventory(item, p));
+            }
+            if (!inventory.isEmpty()) {
+                itemMap.put("stockLimited", true);
+                itemMap.put("inventoryByPlatform", inventory);
+            }
         }
 
         public Map<String, Object> toMap() {
-            double totalDeliveryFee = deliveryFees.values().stream().mapToDouble(Double::doubleValue).sum();
-            double totalHandlingFee = handlingFees.values().stream().mapToDouble(Double::doubleValue).sum();
-            double totalPlatformFee = platformFees.values().stream().mapToDouble(Double::doubleValue).sum();
-            
+            double totalDeliveryFee = sum(deliveryFees);
+
+            List<Map<String, Object>> items = new ArrayList<>(sources.length);
+            for (int item = 0; item < sources.length; item++) {
+                Map<String, Object> itemMap = new HashMap<>();
+                itemMap.put("name", model.productName(item));
+                if (sources[item] == UNAVAILABLE) {
+                    itemMap.put("available", false);
+                    if (comboPlatform < 0) {
+                        putStockLimits(itemMap, item);
+                    }
+                } else {
+                    itemMap.put("source", model.platform(sources[item]));
+                    itemMap.put("price", model.lineTotal(item, sources[item]));
+                    itemMap.put("unitPrice", model.unitPrice(item, sources[item]));
+                    itemMap.put("quantity", model.quantity(item));
+                    itemMap.put("available", true);
+                    itemMap.put("isFallback", fallbacks[item]);
+                    itemMap.put("data", model.source(item, sources[item]));
+                }
+                if (comboPlatform >= 0 && sources[item] != comboPlatform && model.isStockLimited(item, comboPlatform)) {
+                    itemMap.put("stockLimited", true);
+                    itemMap.put("inventory", model.inventory(item, comboPlatform));
+                }
+                items.add(itemMap);
+            }
+
             Map<String, Object> result = new HashMap<>();
             result.put("platform", platform);
             result.put("subtotal", subtotal);
             result.put("deliveryFee", totalDeliveryFee);
-            result.put("deliveryFeeBreakdown", deliveryFees);
-            result.put("handlingCharge", totalHandlingFee);
-            result.put("handlingFeeBreakdown", handlingFees);
-            result.put("platformFee", totalPlatformFee);
-            result.put("platformFeeBreakdown", platformFees);
-            result.put("platformSubtotals", platformSubtotals);
+            result.put("deliveryFeeBreakdown", breakdown(deliveryFees));
+            result.put("handlingCharge", sum(handlingFees));
+            result.put("handlingFeeBreakdown", breakdown(handlingFees));
+            result.put("platformFee", sum(platformFees));
+            result.put("platformFeeBreakdown", breakdown(platformFees));
+            result.put("platformSubtotals", breakdown(platformSubtotals));
             result.put("totalCost", totalCost);
             result.put("availableItems", availableItems);
             result.put("unavailableItems", unavailableItems);
             result.put("isFreeDelivery", totalDeliveryFee == 0);
+            if (exact != null) {
+                result.put("exact", exact);
+            }
             result.put("items", items);
-            
+
             return result;
         }
     }
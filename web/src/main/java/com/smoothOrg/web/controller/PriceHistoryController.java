@@ -0,0 +1,34 @@
+package com.smoothOrg.web.controller;
+
+import com.smoothOrg.services.pricehistory.PriceHistory;
+import com.smoothOrg.services.pricehistory.PriceHistoryService;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Price history of a product, for "is this a good deal" checks and trend charts.
+ */
+@RestController
+@RequestMapping("/api/products")
+public class PriceHistoryController {
+
+    private final PriceHistoryService priceHistoryService;
+
+    public PriceHistoryController(PriceHistoryService priceHistoryService) {
+        this.priceHistoryService = priceHistoryService;
+    }
+
+    /**
+     * Min, max, average and last price over the last {@code days} days per platform and
+     * geohash cell, optionally with per-day rollups ({@code daily}) or every price point
+     * ({@code intraday}).
+     */
+    @GetMapping("/{productId}/price-history")
+    public PriceHistory getPriceHistory(@PathVariable String productId,
+                                        @RequestParam(defaultValue = "30") int days,
+                                        @RequestParam(required = false) String platform,
+                                        @RequestParam(required = false) String geohash,
+                                        @RequestParam(defaultValue = "false") boolean daily,
+                                        @RequestParam(defaultValue = "false") boolean intraday) {
+        return priceHistoryService.history(productId, days, platform, geohash, daily, intraday);
+    }
+}
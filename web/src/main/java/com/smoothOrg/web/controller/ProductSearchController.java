@@ -1,48 +1,54 @@
 package com.smoothOrg.web.controller;
 
-import com.smoothOrg.services.elastic.ElasticsearchService;
+import com.smoothOrg.services.elastic.ElasticsearchAsyncService;
+import com.smoothOrg.services.elastic.ProductComparison;
+import com.smoothOrg.services.elastic.ProductDoc;
 import com.smoothOrg.services.util.GeohashUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Product search endpoints. Every handler returns a future from {@link ElasticsearchAsyncService},
+ * so the servlet thread is released while Elasticsearch works and in-flight searches are not
+ * bounded by the request thread pool.
+ */
 @RestController
 @RequestMapping("/api/products")
 public class ProductSearchController {
 
-    private final ElasticsearchService elasticsearchService;
+    private final ElasticsearchAsyncService elasticsearchService;
     private final String defaultIndex;
 
-    public ProductSearchController(ElasticsearchService elasticsearchService,
-                                   @Value("${app.elasticsearch.products-index:grocery_products_v1}") String defaultIndex) {
+    public ProductSearchController(ElasticsearchAsyncService elasticsearchService,
+                                   @Value("${app.elasticsearch.products-index:grocery_products}") String defaultIndex) {
         this.elasticsearchService = elasticsearchService;
         this.defaultIndex = defaultIndex;
     }
 
     @GetMapping("/search")
-    public ResponseEntity<ProductSearchResponse> searchProducts(
+    public CompletableFuture<ResponseEntity<ProductSearchResponse>> searchProducts(
             @RequestParam("query") String query,
             @RequestParam(value = "size", required = false) Integer size,
-            @RequestParam(value = "index", required = false) String index) throws IOException {
+            @RequestParam(value = "index", required = false) String index) {
         String targetIndex = resolveIndex(index);
-        List<Map<String, Object>> results = elasticsearchService.searchProducts(targetIndex, query, size);
-        return ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, null, results));
+        return elasticsearchService.searchProductsAsync(targetIndex, query, size)
+                .thenApply(results -> ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, null, results)));
     }
 
     @GetMapping("/search/by-geohash")
-    public ResponseEntity<ProductSearchResponse> searchProductsByGeohash(
+    public CompletableFuture<ResponseEntity<ProductSearchResponse>> searchProductsByGeohash(
             @RequestParam("query") String query,
             @RequestParam("geohash") String geohash,
             @RequestParam(value = "size", required = false) Integer size,
-            @RequestParam(value = "index", required = false) String index) throws IOException {
+            @RequestParam(value = "index", required = false) String index) {
         String targetIndex = resolveIndex(index);
-        List<Map<String, Object>> results = elasticsearchService.searchProductsByGeohash(targetIndex, query, geohash, size);
-        return ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, geohash, results));
+        return elasticsearchService.searchProductsByGeohashAsync(targetIndex, query, geohash, size)
+                .thenApply(results -> ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, geohash, results)));
     }
 
     /**
@@ -50,20 +56,90 @@ public class ProductSearchController {
      * Automatically converts lat/long to geohash.
      */
     @GetMapping("/search/by-location")
-    public ResponseEntity<ProductSearchResponse> searchProductsByLocation(
+    public CompletableFuture<ResponseEntity<ProductSearchResponse>> searchProductsByLocation(
             @RequestParam("query") String query,
             @RequestParam("latitude") double latitude,
             @RequestParam("longitude") double longitude,
             @RequestParam(value = "precision", defaultValue = "7") int precision,
             @RequestParam(value = "size", required = false) Integer size,
-            @RequestParam(value = "index", required = false) String index) throws IOException {
+            @RequestParam(value = "index", required = false) String index) {
         
         // Convert lat/long to geohash with 7-char precision (~150m area)
         String geohash = GeohashUtils.encode(latitude, longitude, precision);
         
         String targetIndex = resolveIndex(index);
-        List<Map<String, Object>> results = elasticsearchService.searchProductsByGeohash(targetIndex, query, geohash, size);
-        return ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, geohash, results));
+        return elasticsearchService.searchProductsByGeohashAsync(targetIndex, query, geohash, size)
+                .thenApply(results -> ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, geohash, results)));
+    }
+
+    /**
+     * Search around a location that also covers the neighbouring cells and coarser fallbacks,
+     * so users near a cell boundary get results from one call. Pass either a geohash or
+     * latitude/longitude.
+     */
+    @GetMapping("/search/nearby")
+    public CompletableFuture<ResponseEntity<ProductSearchResponse>> searchProductsNearby(
+            @RequestParam("query") String query,
+            @RequestParam(value = "geohash", required = false) String geohash,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam(value = "precision", defaultValue = "7") int precision,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "index", required = false) String index) {
+        String cell = geohash;
+        if (!StringUtils.hasText(cell)) {
+            if (latitude == null || longitude == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+            }
+            cell = GeohashUtils.encode(latitude, longitude, precision);
+        }
+
+        String targetIndex = resolveIndex(index);
+        String center = cell;
+        return elasticsearchService.searchProductsNearGeohashAsync(targetIndex, query, center, size)
+                .thenApply(results -> ResponseEntity.ok(new ProductSearchResponse(targetIndex, query, center, results)));
+    }
+
+    /**
+     * Autocomplete for the search box: product names starting with what was typed, from listings
+     * around the given geohash or latitude/longitude when one is passed.
+     */
+    @GetMapping("/suggest")
+    public CompletableFuture<ResponseEntity<ProductSuggestResponse>> suggestProducts(
+            @RequestParam("query") String query,
+            @RequestParam(value = "geohash", required = false) String geohash,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam(value = "size", defaultValue = "8") int size,
+            @RequestParam(value = "index", required = false) String index) {
+        String cell = geohash;
+        if (!StringUtils.hasText(cell) && latitude != null && longitude != null) {
+            cell = GeohashUtils.encode(latitude, longitude, 7);
+        }
+
+        String targetIndex = resolveIndex(index);
+        if (!StringUtils.hasText(query) || size <= 0) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(new ProductSuggestResponse(targetIndex, query, cell, List.of())));
+        }
+        String center = cell;
+        return elasticsearchService.suggestProductsAsync(targetIndex, query, center, size)
+                .thenApply(suggestions -> ResponseEntity.ok(new ProductSuggestResponse(targetIndex, query, center, suggestions)));
+    }
+
+    /**
+     * Search returning one row per product with its price on every platform,
+     * ready for the cart calculators (no client-side merge needed).
+     */
+    @GetMapping("/search/grouped")
+    public CompletableFuture<ResponseEntity<ProductComparisonResponse>> searchProductComparisons(
+            @RequestParam("query") String query,
+            @RequestParam(value = "geohash", required = false) String geohash,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "index", required = false) String index) {
+        String targetIndex = resolveIndex(index);
+        return elasticsearchService.searchProductComparisonsAsync(targetIndex, query, geohash, size)
+                .thenApply(results -> ResponseEntity.ok(new ProductComparisonResponse(targetIndex, query, geohash, results)));
     }
 
     private String resolveIndex(String requestedIndex) {
@@ -73,6 +149,18 @@ public class ProductSearchController {
     public record ProductSearchResponse(String index,
                                         String query,
                                         String geohash,
-                                        List<Map<String, Object>> results) {
+                                        List<ProductDoc> results) {
+    }
+
+    public record ProductSuggestResponse(String index,
+                                         String query,
+                                         String geohash,
+                                         List<String> suggestions) {
+    }
+
+    public record ProductComparisonResponse(String index,
+                                            String query,
+                                            String geohash,
+                                            List<ProductComparison> results) {
     }
 }
@@ -3,16 +3,25 @@ package com.smoothOrg.web.controller;
 import com.smoothOrg.domain.entity.CartItem;
 import com.smoothOrg.domain.entity.User;
 import com.smoothOrg.domain.repository.UserRepository;
+import com.smoothOrg.services.cart.CartMetrics;
+import com.smoothOrg.services.cart.CartPricingModel;
 import com.smoothOrg.services.cart.CartService;
+import com.smoothOrg.services.cart.PlatformFeeSchedule;
+import com.smoothOrg.services.elastic.ElasticsearchAsyncService;
+import com.smoothOrg.services.security.AuthenticatedUser;
 import com.smoothOrg.web.config.PlatformFeesConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/user-cart")
@@ -21,13 +30,25 @@ public class UserCartController {
     private final CartService cartService;
     private final UserRepository userRepository;
     private final PlatformFeesConfig platformFeesConfig;
+    private final ElasticsearchAsyncService elasticsearchService;
+    private final String productsIndex;
+    private final CartMetrics cartMetrics;
+    private final Executor pricingExecutor;
 
     public UserCartController(CartService cartService, 
                              UserRepository userRepository,
-                             PlatformFeesConfig platformFeesConfig) {
+                             PlatformFeesConfig platformFeesConfig,
+                             ElasticsearchAsyncService elasticsearchService,
+                             @Value("${app.elasticsearch.products-index:grocery_products}") String productsIndex,
+                             CartMetrics cartMetrics,
+                             @Qualifier("applicationTaskExecutor") Executor pricingExecutor) {
         this.cartService = cartService;
         this.userRepository = userRepository;
         this.platformFeesConfig = platformFeesConfig;
+        this.elasticsearchService = elasticsearchService;
+        this.productsIndex = productsIndex;
+        this.cartMetrics = cartMetrics;
+        this.pricingExecutor = pricingExecutor;
     }
 
     /**
@@ -80,118 +101,153 @@ public class UserCartController {
     }
 
     /**
-     * Calculate platform-wise pricing with fees
+     * Calculate platform-wise pricing with fees.
+     * Cart snapshots are re-priced with live listings for the given geohash
+     * (or the user's current/default one) in a single batched lookup. The lookup is
+     * non-blocking; pricing then runs on the application task executor rather than the
+     * Elasticsearch client's I/O threads.
      */
     @GetMapping("/calculate")
-    public ResponseEntity<CartCalculationResponse> calculateCart() {
+    public CompletableFuture<ResponseEntity<CartCalculationResponse>> calculateCart(
+            @RequestParam(value = "geohash", required = false) String geohash) {
+        // Everything that needs the request (security context, JPA) is read up front
         Long userId = getCurrentUserId();
         List<CartItem> cartItems = cartService.getUserCart(userId);
-
-        // Convert CartItem entities to product maps for calculation
-        List<Map<String, Object>> productMaps = cartItems.stream()
-                .map(CartItem::getProductData)
-                .collect(Collectors.toList());
-
-        List<Map<String, Object>> calculations = calculatePlatformPricing(productMaps);
-
-        // Sort by total cost
-        calculations.sort(Comparator.comparingDouble(c -> (Double) c.get("totalCost")));
-
-        return ResponseEntity.ok(new CartCalculationResponse(calculations));
+        List<Map<String, Object>> snapshots = cartItems.stream().map(CartItem::getProductData).collect(Collectors.toList());
+        List<String> productIds = cartItems.stream().map(CartItem::getProductId).collect(Collectors.toList());
+        int[] quantities = cartItems.stream()
+                .mapToInt(item -> item.getQuantity() != null ? item.getQuantity() : 1)
+                .toArray();
+
+        return repriceWithLiveListings(snapshots, productIds, resolveGeohash(geohash, userId))
+                .thenApplyAsync(productMaps -> {
+                    List<Map<String, Object>> calculations = cartMetrics.timeCalculation("user-cart",
+                            () -> calculatePlatformPricing(productMaps, quantities));
+
+                    // Sort by total cost
+                    calculations.sort(Comparator.comparingDouble(c -> (Double) c.get("totalCost")));
+
+                    return ResponseEntity.ok(new CartCalculationResponse(calculations));
+                }, pricingExecutor);
     }
 
-    // Helper method to calculate platform pricing
-    private List<Map<String, Object>> calculatePlatformPricing(List<Map<String, Object>> items) {
+    // Helper method to calculate platform pricing (package-private for the benchmarks module)
+    List<Map<String, Object>> calculatePlatformPricing(List<Map<String, Object>> items, int[] quantities) {
         List<Map<String, Object>> calculations = new ArrayList<>();
 
-        // Get all unique platforms from cart items
-        Set<String> platforms = items.stream()
-                .flatMap(item -> {
-                    Object platformsObj = item.get("platforms");
-                    if (platformsObj instanceof List) {
-                        return ((List<Map<String, Object>>) platformsObj).stream();
-                    }
-                    return Stream.empty();
-                })
-                .map(p -> (String) p.get("platform"))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        CartPricingModel model = CartPricingModel.fromProducts(items, quantities);
+        PlatformFeeSchedule fees = platformFeesConfig.toFeeSchedule(model.platforms());
+        cartMetrics.recordCart("user-cart", model);
 
-        for (String platform : platforms) {
-            PlatformCalculation calc = calculateForPlatform(platform, items);
+        for (int platform = 0; platform < model.platformCount(); platform++) {
+            PlatformCalculation calc = calculateForPlatform(platform, model, fees);
             calculations.add(calc.toMap());
         }
 
         return calculations;
     }
 
-    private PlatformCalculation calculateForPlatform(String platform, List<Map<String, Object>> items) {
-        PlatformCalculation calc = new PlatformCalculation(platform);
-        PlatformFeesConfig.PlatformFee fees = platformFeesConfig.getFeeForPlatform(platform);
-
-        for (Map<String, Object> item : items) {
-            Object platformsObj = item.get("platforms");
-            if (!(platformsObj instanceof List)) continue;
-            
-            List<Map<String, Object>> platformsList = (List<Map<String, Object>>) platformsObj;
-            
-            // Find this platform's pricing
-            Optional<Map<String, Object>> platformData = platformsList.stream()
-                    .filter(p -> platform.equals(p.get("platform")))
-                    .findFirst();
-
-            if (platformData.isPresent()) {
-                Map<String, Object> data = platformData.get();
-                boolean available = (Boolean) data.getOrDefault("availability", false);
-                
-                if (available) {
-                    double price = ((Number) data.get("selling_price")).doubleValue();
-                    calc.addAvailableItem((String) item.get("product_name"), price, data);
+    private PlatformCalculation calculateForPlatform(int platform, CartPricingModel model, PlatformFeeSchedule fees) {
+        PlatformCalculation calc = new PlatformCalculation(platform, model);
+
+        for (int item = 0; item < model.itemCount(); item++) {
+            // Only items listed on this platform are priced for it
+            if (!model.isListed(item, platform)) continue;
+
+            if (model.isAvailable(item, platform)) {
+                calc.addAvailableItem(item);
+            } else {
+                // Find cheapest available alternative
+                int cheapest = model.cheapestPlatform(item);
+                if (cheapest >= 0) {
+                    calc.addFallbackItem(item, cheapest);
                 } else {
-                    // Find cheapest available alternative
-                    Map<String, Object> cheapest = findCheapestAvailable(platformsList);
-                    if (cheapest != null) {
-                        calc.addFallbackItem(
-                                (String) item.get("product_name"),
-                                (String) cheapest.get("platform"),
-                                ((Number) cheapest.get("selling_price")).doubleValue(),
-                                cheapest
-                        );
-                    } else {
-                        calc.addUnavailableItem((String) item.get("product_name"));
-                    }
+                    calc.addUnavailableItem(item);
                 }
             }
         }
 
         // Calculate fees
-        double deliveryFee = calc.subtotal >= fees.getFreeDeliveryThreshold() ? 0 : fees.getDeliveryFee();
-        calc.setFees(deliveryFee, fees.getHandlingCharge(), fees.getPlatformFee());
+        calc.setFees(fees.deliveryFeeFor(platform, calc.subtotal), fees.handlingCharge(platform), fees.platformFee(platform));
 
         return calc;
     }
 
-    private Map<String, Object> findCheapestAvailable(List<Map<String, Object>> platforms) {
-        return platforms.stream()
-                .filter(p -> (Boolean) p.getOrDefault("availability", false))
-                .min(Comparator.comparingDouble(p -> ((Number) p.get("selling_price")).doubleValue()))
-                .orElse(null);
+    /**
+     * Replace each snapshot's platform listings with live ones; products without
+     * live listings (or carts without a known location) keep their snapshot.
+     *
+     * @param productIds the product id of each snapshot, in the same order
+     */
+    private CompletableFuture<List<Map<String, Object>>> repriceWithLiveListings(List<Map<String, Object>> snapshots,
+                                                                                 List<String> productIds,
+                                                                                 String geohash) {
+        if (!StringUtils.hasText(geohash) || snapshots.isEmpty()) {
+            return CompletableFuture.completedFuture(snapshots);
+        }
+        List<String> lookupIds = productIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return elasticsearchService.getPlatformListingsAsync(productsIndex, lookupIds, geohash).thenApply(listings -> {
+            List<Map<String, Object>> productMaps = new ArrayList<>(snapshots.size());
+            for (int i = 0; i < snapshots.size(); i++) {
+                Map<String, Object> snapshot = snapshots.get(i);
+                String productId = productIds.get(i);
+                List<Map<String, Object>> live = productId != null ? listings.get(productId) : null;
+                if (live == null) {
+                    productMaps.add(snapshot);
+                } else {
+                    Map<String, Object> repriced = new HashMap<>(snapshot);
+                    repriced.put("platforms", live);
+                    productMaps.add(repriced);
+                }
+            }
+            return productMaps;
+        });
     }
 
-    private Long getCurrentUserId() {
+    /**
+     * The requested geohash, else the user's current or default one; the user is only loaded
+     * when no geohash was passed.
+     */
+    private String resolveGeohash(String requested, Long userId) {
+        if (StringUtils.hasText(requested)) return requested;
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (StringUtils.hasText(user.getCurrentGeohash())) return user.getCurrentGeohash();
+        return user.getDefaultGeohash();
+    }
+
+    private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
+        return userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return user.getId();
+    }
+
+    private Long getCurrentUserId() {
+        // Claim-based principals already carry the id
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.id();
+        }
+        return getCurrentUser().getId();
     }
 
     // DTOs
     public record AddToCartRequest(Map<String, Object> productData, Integer quantity) {}
     public record CartCalculationResponse(List<Map<String, Object>> calculations) {}
 
+    /**
+     * Per-item sources are kept as platform ordinals; item maps are only built for the response.
+     */
     static class PlatformCalculation {
-        String platform;
+        private static final int SKIPPED = -2;
+        private static final int UNAVAILABLE = -1;
+
+        final int platform;
+        final CartPricingModel model;
+        final int[] sources;
         double subtotal = 0;
         double deliveryFee = 0;
         double handlingCharge = 0;
@@ -199,56 +255,86 @@ public class UserCartController {
         double totalCost = 0;
         int availableItems = 0;
         int unavailableItems = 0;
-        List<Map<String, Object>> items = new ArrayList<>();
         boolean isFreeDelivery = false;
 
-        public PlatformCalculation(String platform) {
+        PlatformCalculation(int platform, CartPricingModel model) {
             this.platform = platform;
+            this.model = model;
+            this.sources = new int[model.itemCount()];
+            Arrays.fill(sources, SKIPPED);
         }
 
-        public void addAvailableItem(String name, double price, Map<String, Object> data) {
-            subtotal += price;
+        void addAvailableItem(int item) {
+            subtotal += model.lineTotal(item, platform);
             availableItems++;
-            items.add(Map.of(
-                    "name", name,
-                    "source", platform,
-                    "price", price,
-                    "available", true,
-                    "data", data
-            ));
+            sources[item] = platform;
         }
 
-        public void addFallbackItem(String name, String sourcePlatform, double price, Map<String, Object> data) {
-            subtotal += price;
-            items.add(Map.of(
-                    "name", name,
-                    "source", sourcePlatform,
-                    "price", price,
-                    "available", true,
-                    "isFallback", true,
-                    "data", data
-            ));
+        void addFallbackItem(int item, int sourcePlatform) {
+            subtotal += model.lineTotal(item, sourcePlatform);
+            sources[item] = sourcePlatform;
         }
 
-        public void addUnavailableItem(String name) {
+        void addUnavailableItem(int item) {
             unavailableItems++;
-            items.add(Map.of(
-                    "name", name,
-                    "available", false
-            ));
+            sources[item] = UNAVAILABLE;
         }
 
-        public void setFees(double delivery, double handling, double platform) {
+        void setFees(double delivery, double handling, double platformCharge) {
             this.deliveryFee = delivery;
             this.handlingCharge = handling;
-            this.platformFee = platform;
+            this.platformFee = platformCharge;
             this.isFreeDelivery = delivery == 0;
-            this.totalCost = subtotal + delivery + handling + platform;
+            this.totalCost = subtotal + delivery + handling + platformCharge;
+        }
+
+        /**
+         * Mark an item this platform lists in stock but with less inventory than the quantity.
+         */
+        private Map<String, Object> withStockLimit(int item, Map<String, Object> itemMap) {
+            if (!model.isStockLimited(item, platform)) return itemMap;
+            Map<String, Object> limited = new HashMap<>(itemMap);
+            limited.put("stockLimited", true);
+            limited.put("inventory", model.inventory(item, platform));
+            return limited;
         }
 
         public Map<String, Object> toMap() {
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (int item = 0; item < sources.length; item++) {
+                int source = sources[item];
+                if (source == SKIPPED) continue;
+                if (source == UNAVAILABLE) {
+                    items.add(withStockLimit(item, Map.of(
+                            "name", model.productName(item),
+                            "available", false
+                    )));
+                } else if (source == platform) {
+                    items.add(Map.of(
+                            "name", model.productName(item),
+                            "source", model.platform(source),
+                            "price", model.lineTotal(item, source),
+                            "unitPrice", model.unitPrice(item, source),
+                            "quantity", model.quantity(item),
+                            "available", true,
+                            "data", model.source(item, source)
+                    ));
+                } else {
+                    items.add(withStockLimit(item, Map.of(
+                            "name", model.productName(item),
+                            "source", model.platform(source),
+                            "price", model.lineTotal(item, source),
+                            "unitPrice", model.unitPrice(item, source),
+                            "quantity", model.quantity(item),
+                            "available", true,
+                            "isFallback", true,
+                            "data", model.source(item, source)
+                    )));
+                }
+            }
+
             return Map.of(
-                    "platform", platform,
+                    "platform", model.platform(platform),
                     "subtotal", subtotal,
                     "deliveryFee", deliveryFee,
                     "handlingCharge", handlingCharge,
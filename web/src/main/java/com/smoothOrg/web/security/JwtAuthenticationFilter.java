@@ -1,6 +1,11 @@
 package com.smoothOrg.web.security;
 
+import com.smoothOrg.services.security.ActiveUserCheck;
+import com.smoothOrg.services.security.AuthenticatedUser;
 import com.smoothOrg.services.security.JwtService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -16,15 +21,30 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Authenticates requests carrying a Bearer token. Time spent here (excluding the rest of the
+ * chain) is recorded as {@code security.jwt.filter}, tagged with the outcome.
+ * <p>
+ * Tokens carrying a user id claim are turned into an {@link AuthenticatedUser} straight from the
+ * verified claims, optionally confirmed by {@link ActiveUserCheck}. Older tokens without the claim
+ * still go through the {@link UserDetailsService} until they expire.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final ActiveUserCheck activeUserCheck;
+    private final MeterRegistry meterRegistry;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   UserDetailsService userDetailsService,
+                                   ActiveUserCheck activeUserCheck,
+                                   MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.activeUserCheck = activeUserCheck;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -34,8 +54,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull FilterChain filterChain
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userEmail;
 
         // Check if Authorization header exists and starts with Bearer
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -43,25 +61,54 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Extract JWT token
-        jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            outcome = authenticate(request, authHeader.substring(7));
+        } finally {
+            sample.stop(Timer.builder("security.jwt.filter")
+                    .description("JWT validation and principal loading")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
 
-        // Validate and authenticate
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Validate the token and populate the security context.
+     *
+     * @return the outcome tag: authenticated, rejected or skipped (already authenticated)
+     */
+    private String authenticate(HttpServletRequest request, String jwt) {
+        // One verification; the claims are reused for the validity check below
+        final Claims claims = jwtService.extractAllClaims(jwt);
+        final String userEmail = claims.getSubject();
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+        // Validate and authenticate
+        if (userEmail == null || SecurityContextHolder.getContext().getAuthentication() != null) {
+            return "skipped";
+        }
+        UserDetails userDetails = jwtService.toPrincipal(claims);
+        if (userDetails != null) {
+            if (!activeUserCheck.isActive((AuthenticatedUser) userDetails)) {
+                return "rejected";
+            }
+        } else {
+            // Token issued before user ids were embedded
+            userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            if (!jwtService.isTokenValid(claims, userDetails)) {
+                return "rejected";
             }
         }
-
-        filterChain.doFilter(request, response);
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        return "authenticated";
     }
 }
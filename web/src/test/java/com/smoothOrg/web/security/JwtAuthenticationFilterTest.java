@@ -0,0 +1,122 @@
+package com.smoothOrg.web.security;
+
+import com.smoothOrg.domain.entity.User;
+import com.smoothOrg.domain.repository.UserRepository;
+import com.smoothOrg.services.security.ActiveUserCheck;
+import com.smoothOrg.services.security.AuthenticatedUser;
+import com.smoothOrg.services.security.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+    private static final String EMAIL = "shopper@example.com";
+
+    private final JwtService jwtService = new JwtService(SECRET, 60_000, 100);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final ActiveUserCheck activeUserCheck = new ActiveUserCheck(userRepository, true, 30, 100);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtAuthenticationFilter filter =
+            new JwtAuthenticationFilter(jwtService, userDetailsService, activeUserCheck, meterRegistry);
+
+    private final UserDetails details = org.springframework.security.core.userdetails.User
+            .withUsername(EMAIL).password("x").authorities("ROLE_USER").build();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatesFromClaimsWithoutLoadingTheUser() throws Exception {
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user(7L, EMAIL)));
+
+        filter(jwtService.generateToken(7L, details));
+        SecurityContextHolder.clearContext();
+        filter(jwtService.generateToken(7L, details));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        AuthenticatedUser principal = assertInstanceOf(AuthenticatedUser.class, authentication.getPrincipal());
+        assertEquals(7L, principal.id());
+        assertEquals(EMAIL, principal.email());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), principal.authorities());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        // Second request answered from the revocation cache
+        verify(userRepository, times(1)).findById(anyLong());
+        assertEquals(2, meterRegistry.get("security.jwt.filter").tag("outcome", "authenticated").timer().count());
+    }
+
+    @Test
+    void authenticatesLegacyTokenThroughUserDetailsService() throws Exception {
+        when(userDetailsService.loadUserByUsername(EMAIL)).thenReturn(details);
+
+        filter(jwtService.generateToken(details));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals(details, authentication.getPrincipal());
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void rejectsTokenOfDeletedUser() throws Exception {
+        when(userRepository.findById(7L)).thenReturn(Optional.empty());
+
+        MockFilterChain chain = filter(jwtService.generateToken(7L, details));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        // The request continues unauthenticated; the security chain turns it away
+        assertNotNull(chain.getRequest());
+        assertEquals(1, meterRegistry.get("security.jwt.filter").tag("outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void rejectsTokenOfRenamedUser() throws Exception {
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user(7L, "renamed@example.com")));
+
+        filter(jwtService.generateToken(7L, details));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private MockFilterChain filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cart");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+
+    private static User user(Long id, String email) {
+        User user = new User(email, "hash", "Shopper");
+        user.setId(id);
+        return user;
+    }
+}